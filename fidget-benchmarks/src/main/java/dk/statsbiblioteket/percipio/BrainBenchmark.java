@@ -0,0 +1,120 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.Score;
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opf_labs.fmts.benchmarks.SyntheticData;
+import org.opf_labs.fmts.benchmarks.SyntheticData.Format;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks learning a signature from synthetic files with Brain.learn, and scoring the files against a set of
+ * learnt signatures with Brain.score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BrainBenchmark {
+
+    /** The number of files of each format */
+    @Param({"16"})
+    public int files;
+
+    /** The length of each file */
+    @Param({"4096", "65536"})
+    public int length;
+
+    private File root;
+
+    private final Brain brain = new Brain();
+
+    private final List<File> all = new ArrayList<File>();
+
+    private final List<Signature> signatures = new ArrayList<Signature>();
+
+    private List<File> pdfs;
+
+    /**
+     * Writes the files, and learns a signature per format
+     *
+     * @throws IOException if the files can't be written
+     */
+    @Setup
+    public void setUp() throws IOException {
+        root = SyntheticData.tempDir();
+        for (Format format : Format.values()) {
+            File dir = new File(root, format.name());
+            if (!dir.mkdir()) {
+                throw new IOException("Couldn't create " + dir);
+            }
+            List<File> formatFiles = SyntheticData.writeItems(dir, files, format, length);
+            signatures.add(brain.learn(formatFiles));
+            all.addAll(formatFiles);
+            if (format == Format.PDF) {
+                pdfs = formatFiles;
+            }
+        }
+    }
+
+    /**
+     * Deletes the files
+     */
+    @TearDown
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    /**
+     * @return the signature learnt from the PDF files
+     * @throws IOException if a file can't be read
+     */
+    @Benchmark
+    public Signature learn() throws IOException {
+        return brain.learn(pdfs);
+    }
+
+    /**
+     * @return the scores of all of the files against all of the signatures
+     * @throws IOException if a file can't be read
+     */
+    @Benchmark
+    public Map<File, Score> score() throws IOException {
+        return brain.score(signatures, all);
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.BytePattern;
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opf_labs.fmts.benchmarks.SyntheticData;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading a library of signatures, by unmarshalling a folder of XML signatures as Percipio sniff does,
+ * and by reading the same signatures compiled into a SignaturePack.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureLoadBenchmark {
+
+    /** The number of signatures in the library */
+    @Param({"1000"})
+    public int signatures;
+
+    /** The number of front patterns of each signature */
+    private static final int PATTERNS = 8;
+
+    private File root;
+
+    private File folder;
+
+    private File pack;
+
+    private JAXBContext context;
+
+    /**
+     * Writes the signatures as XML files, and compiles them into a pack
+     *
+     * @throws IOException   if the signatures can't be written
+     * @throws JAXBException if the signatures can't be marshalled
+     */
+    @Setup
+    public void setUp() throws IOException, JAXBException {
+        root = SyntheticData.tempDir();
+        folder = new File(root, "signatures");
+        if (!folder.mkdir()) {
+            throw new IOException("Couldn't create " + folder);
+        }
+        pack = new File(root, "signatures.pack");
+        context = JAXBContext.newInstance(Signature.class);
+        Marshaller marshaller = context.createMarshaller();
+
+        Random random = new Random(SyntheticData.SEED);
+        List<Signature> library = new ArrayList<Signature>(signatures);
+        for (int i = 0; i < signatures; i++) {
+            Signature signature = new Signature();
+            signature.getInfo().setFileType("Synthetic format " + i);
+            signature.getGeneral().setNumberOfFiles(1 + random.nextInt(100));
+            for (int p = 0; p < PATTERNS; p++) {
+                byte[] pattern = new byte[1 + random.nextInt(16)];
+                random.nextBytes(pattern);
+                signature.getFrontBlock().pattern.add(new BytePattern(p * 32, pattern));
+            }
+            library.add(signature);
+            marshaller.marshal(signature, new File(folder, i + ".sig"));
+        }
+        SignaturePack.write(library, pack);
+    }
+
+    /**
+     * Deletes the signatures
+     */
+    @TearDown
+    public void tearDown() {
+        FileUtils.deleteQuietly(root);
+    }
+
+    /**
+     * @return the signatures unmarshalled from the XML files
+     * @throws JAXBException if a signature can't be unmarshalled
+     */
+    @Benchmark
+    public List<Signature> unmarshal() throws JAXBException {
+        Unmarshaller unmarshaller = context.createUnmarshaller();
+        List<Signature> loaded = new ArrayList<Signature>(signatures);
+        for (File file : folder.listFiles()) {
+            loaded.add((Signature) unmarshaller.unmarshal(file));
+        }
+        return loaded;
+    }
+
+    /**
+     * @return the signatures read from the pack
+     * @throws IOException if the pack can't be read
+     */
+    @Benchmark
+    public List<Signature> pack() throws IOException {
+        return SignaturePack.read(pack);
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.base.Charsets;
+
+/**
+ * Generates the synthetic data the benchmarks run over, so they need no
+ * external corpus and give the same data on every run. All of the data comes
+ * from a seeded Random.
+ * 
+ * @version 0.1
+ */
+public final class SyntheticData {
+	/** Seed used for all of the benchmark data */
+	public static final long SEED = 20121102L;
+
+	/**
+	 * Leading bytes of the synthetic formats.
+	 */
+	public enum Format {
+		/** A PDF header */
+		PDF("%PDF-1.4\n", ".pdf"),
+		/** A PNG header */
+		PNG("\u0089PNG\r\n\u001a\n", ".png"),
+		/** A GIF header */
+		GIF("GIF89a", ".gif"),
+		/** No header, just random bytes */
+		RANDOM("", ".bin");
+
+		private final byte[] magic;
+		private final String extension;
+
+		private Format(final String magic, final String extension) {
+			this.magic = new byte[magic.length()];
+			for (int index = 0; index < magic.length(); index++) {
+				this.magic[index] = (byte) magic.charAt(index);
+			}
+			this.extension = extension;
+		}
+
+		/**
+		 * @return the file name extension of the format
+		 */
+		public String getExtension() {
+			return this.extension;
+		}
+	}
+
+	private SyntheticData() {
+		throw new AssertionError("NO THROUGH ROAD");
+	}
+
+	/**
+	 * @param random
+	 *            the source of the random bytes
+	 * @param format
+	 *            the format of the item
+	 * @param length
+	 *            the length of the item
+	 * @return the format's header followed by random bytes
+	 */
+	public static byte[] item(final Random random, final Format format,
+			final int length) {
+		byte[] item = new byte[length];
+		random.nextBytes(item);
+		System.arraycopy(format.magic, 0, item, 0,
+				Math.min(length, format.magic.length));
+		return item;
+	}
+
+	/**
+	 * @param dir
+	 *            the directory to write the items to
+	 * @param count
+	 *            the number of items
+	 * @param format
+	 *            the format of the items
+	 * @param length
+	 *            the length of each item
+	 * @return the item files
+	 * @throws IOException
+	 *             if an item can't be written
+	 */
+	public static List<File> writeItems(final File dir, final int count,
+			final Format format, final int length) throws IOException {
+		Random random = new Random(SEED);
+		List<File> files = new ArrayList<File>(count);
+		for (int index = 0; index < count; index++) {
+			File file = new File(dir, String.format("%06d", Integer.valueOf(index))
+					+ format.getExtension());
+			FileUtils.writeByteArrayToFile(file, item(random, format, length));
+			files.add(file);
+		}
+		return files;
+	}
+
+	/**
+	 * @param types
+	 *            the number of MIME types to define
+	 * @return a mime-info document defining the types, each with a magic
+	 *         match and a glob
+	 */
+	public static byte[] mimeInfo(final int types) {
+		StringBuilder xml = new StringBuilder(
+				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<mime-info>\n");
+		for (int type = 0; type < types; type++) {
+			xml.append("  <mime-type type=\"application/x-synthetic-").append(type).append("\">\n")
+					.append("    <_comment>Synthetic format ").append(type).append("</_comment>\n")
+					.append("    <magic priority=\"50\">\n")
+					.append("      <match value=\"SYN").append(type).append("\" type=\"string\" offset=\"0\"/>\n")
+					.append("    </magic>\n")
+					.append("    <glob pattern=\"*.syn").append(type).append("\"/>\n")
+					.append("  </mime-type>\n");
+		}
+		xml.append("</mime-info>\n");
+		return xml.toString().getBytes(Charsets.UTF_8);
+	}
+
+	/**
+	 * @return a new empty temporary directory, for the caller to delete
+	 * @throws IOException
+	 *             if the directory can't be created
+	 */
+	public static File tempDir() throws IOException {
+		File dir = File.createTempFile("fidget-bench", "");
+		if (!dir.delete() || !dir.mkdir())
+			throw new IOException("Couldn't create temporary directory " + dir);
+		return dir;
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.corpora.govdocs;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opf_labs.fmts.benchmarks.SyntheticData;
+import org.opf_labs.fmts.corpora.CorpusItem;
+
+/**
+ * Benchmarks fetching items from a synthetic zipped GovDocs corpus, by number
+ * with GovDocsZipped.getItem, and by walking the whole corpus.
+ * 
+ * @version 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GovDocsZippedBenchmark {
+	private static final int ITEM_LENGTH = 16 * 1024;
+
+	/** The number of zipped folders */
+	@Param({ "4" })
+	public int folders;
+
+	/** The number of items in each folder */
+	@Param({ "250" })
+	public int itemsPerFolder;
+
+	private File root;
+	private GovDocsCorpora corpus;
+	private int[] numbers;
+	private int next = 0;
+	private final byte[] buffer = new byte[ITEM_LENGTH];
+
+	/**
+	 * Writes the corpus.
+	 * 
+	 * @throws IOException
+	 *             if the corpus can't be written
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		this.root = SyntheticData.tempDir();
+		SyntheticGovDocs synthetic = SyntheticGovDocs
+				.generator(this.folders, this.itemsPerFolder)
+				.seed(SyntheticData.SEED).sizes(ITEM_LENGTH, ITEM_LENGTH).build();
+		synthetic.writeZips(this.root);
+		this.numbers = new int[synthetic.getItemCount()];
+		for (int folder = 0; folder < this.folders; folder++) {
+			System.arraycopy(synthetic.getItemNumbers(folder), 0, this.numbers,
+					folder * this.itemsPerFolder, this.itemsPerFolder);
+		}
+		this.corpus = GovDocs.newInstance(this.root, null);
+	}
+
+	/**
+	 * Deletes the corpus.
+	 */
+	@TearDown
+	public void tearDown() {
+		FileUtils.deleteQuietly(this.root);
+	}
+
+	/**
+	 * Reads the next item by number, the numbers cycle through the folders in
+	 * order.
+	 * 
+	 * @return the number of bytes read
+	 * @throws IOException
+	 *             if the item can't be read
+	 */
+	@Benchmark
+	public int getItem() throws IOException {
+		int number = this.numbers[this.next];
+		this.next = (this.next + 1) % this.numbers.length;
+		return read(this.corpus.getItem(number));
+	}
+
+	/**
+	 * Reads every item of the corpus.
+	 * 
+	 * @return the number of bytes read
+	 * @throws IOException
+	 *             if an item can't be read
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public long items() throws IOException {
+		long total = 0L;
+		for (CorpusItem item : this.corpus.items()) {
+			total += read(item.getStream());
+		}
+		return total;
+	}
+
+	private int read(final InputStream stream) throws IOException {
+		try {
+			int total = 0;
+			for (int read = stream.read(this.buffer); read >= 0; read = stream.read(this.buffer)) {
+				total += read;
+			}
+			return total;
+		} finally {
+			stream.close();
+		}
+	}
+}
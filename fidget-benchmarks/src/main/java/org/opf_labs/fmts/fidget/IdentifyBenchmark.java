@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.fidget;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opf_labs.fmts.benchmarks.SyntheticData;
+import org.opf_labs.fmts.benchmarks.SyntheticData.Format;
+
+/**
+ * Benchmarks identifying and hashing a single in memory item, through
+ * TikaIdentifier.fromStream and TikaIdentifier.hash64K.
+ * 
+ * @version 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentifyBenchmark {
+	private static final URI LOCATION = URI.create("bench:item");
+
+	/** The format of the item */
+	@Param({ "PDF", "PNG", "RANDOM" })
+	public Format format;
+
+	/** The length of the item */
+	@Param({ "1024", "65536", "1048576" })
+	public int length;
+
+	private TikaSigTester tester;
+	private byte[] item;
+
+	/**
+	 * Loads the vanilla signatures and generates the item.
+	 */
+	@Setup
+	public void setUp() {
+		this.tester = TikaSigTester.vanilla();
+		this.item = SyntheticData.item(new Random(SyntheticData.SEED),
+				this.format, this.length);
+	}
+
+	/**
+	 * @return the result of identifying and hashing the item
+	 */
+	@Benchmark
+	public IdentificationResult fromStream() {
+		return this.tester.identify(new ByteArrayInputStream(this.item), LOCATION);
+	}
+
+	/**
+	 * @return the hash of the item
+	 * @throws IOException
+	 *             never, the item is in memory
+	 */
+	@Benchmark
+	public String hash64K() throws IOException {
+		return TikaIdentifier.hash64K(new ByteArrayInputStream(this.item));
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.mimeinfo;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opf_labs.fmts.benchmarks.SyntheticData;
+
+/**
+ * Benchmarks parsing a mime-info signature file with MimeInfoUtils.parser.
+ * 
+ * @version 0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MimeInfoParserBenchmark {
+	/** The number of MIME types in the signature file */
+	@Param({ "10", "1000" })
+	public int types;
+
+	private byte[] mimeInfo;
+
+	/**
+	 * Generates the signature file.
+	 */
+	@Setup
+	public void setUp() {
+		this.mimeInfo = SyntheticData.mimeInfo(this.types);
+	}
+
+	/**
+	 * @return the parsed signature file
+	 * @throws JAXBException
+	 *             if the signature file can't be parsed
+	 */
+	@Benchmark
+	public MimeInfo parser() throws JAXBException {
+		return MimeInfoUtils.parser(new ByteArrayInputStream(this.mimeInfo));
+	}
+}
@@ -1,21 +1,80 @@
 package dk.statsbiblioteket.percipio;
 
-import dk.statsbiblioteket.percipio.datastructures.BytePattern;
+import dk.statsbiblioteket.percipio.datastructures.General;
 import dk.statsbiblioteket.percipio.datastructures.Score;
 import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.opf_labs.fmts.corpora.CorpusItem;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the thinking class of Percipio. Here all the calculations are performed
  */
 public class Brain {
 
-    public static final int SIZE = 1024;
+    /**
+     * The default size of the front and end blocks
+     */
+    public static final int SIZE = General.DEFAULT_BLOCK_SIZE;
+
+    /**
+     * The number of files queued per thread when scoring in parallel. Keeps the queue bounded, no matter how many
+     * files are scored
+     */
+    private static final int QUEUE_PER_THREAD = 64;
+
+
+    /**
+     * The size of the front and end blocks of the signatures learned
+     */
+    private final int blockSize;
+
+    /**
+     * The number of signatures kept in each score
+     */
+    private final int scoreLimit;
 
 
     public Brain() {
+        this(SIZE);
+    }
+
+    /**
+     * Create a brain learning signatures with other than the default block size. Larger blocks find patterns deeper
+     * into the files, smaller blocks make learning faster.
+     *
+     * @param blockSize the size of the front and end blocks of the signatures learned
+     */
+    public Brain(int blockSize) {
+        this(blockSize, Score.UNBOUNDED);
+    }
+
+    /**
+     * Create a brain where the scores only keep the best signatures of each file. With a large signature library,
+     * this keeps the memory used per file down to the few signatures that are actually reported.
+     *
+     * @param blockSize  the size of the front and end blocks of the signatures learned
+     * @param scoreLimit the number of signatures kept in each score
+     * @see Score#Score(int)
+     */
+    public Brain(int blockSize, int scoreLimit) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("The block size must be at least 1, not " + blockSize);
+        }
+        if (scoreLimit < 1) {
+            throw new IllegalArgumentException("The score limit must be at least 1, not " + scoreLimit);
+        }
+        this.blockSize = blockSize;
+        this.scoreLimit = scoreLimit;
     }
 
 
@@ -24,39 +83,18 @@ public class Brain {
     }
 
     public void test(File[] files, Signature signature) throws IOException {
+        SignatureMatcher matcher = new SignatureMatcher(Collections.singletonList(signature));
+        Window window = matcher.newWindow();
         for (File file : files) {
             if (!file.isFile()) {
                 continue;
             }
-            boolean valid = true;
-            RandomAccessFile rfile = new RandomAccessFile(file, "r");
-            for (BytePattern bytePattern : signature.getFrontBlock().pattern) {
-                byte[] fromFile = new byte[bytePattern.getPattern().length];
-                rfile.seek(bytePattern.getOffset());
-                rfile.read(fromFile);
-                if (!Arrays.equals(bytePattern.getPattern(), fromFile)) {
-                    valid = false;
-                }
-            }
-            for (BytePattern bytePattern : signature.getEndBlock().pattern) {
-                byte[] fromFile = new byte[bytePattern.getPattern().length];
-                long seekOffset = rfile.length() - SIZE + bytePattern.getOffset();
-                if( seekOffset >= 0 ) {
-                	rfile.seek(seekOffset);
-                	rfile.read(fromFile);
-                	if (!Arrays.equals(bytePattern.getPattern(), fromFile)) {
-                		valid = false;
-                	}
-                } else {
-                	valid = false;
-                }
-            }
-            if (valid) {
+            window.read(file);
+            if (matcher.matchesAll(0, window)) {
                 System.err.println("The file '" + file.getAbsolutePath() + "' matches the given signature");
             } else {
                 System.err.println("The file '" + file.getAbsolutePath() + "' does not match the given signature");
             }
-            rfile.close();
         }
 
     }
@@ -67,60 +105,143 @@ public class Brain {
     }
 
 
+    /**
+     * Score the files against the signatures. The signatures are compiled once, and each file is opened once.
+     *
+     * @param signatures the signatures to score against
+     * @param files      the files to score. Anything that is not a file is skipped
+     * @return the score of each file
+     * @throws IOException if a file could not be read
+     * @see SignatureMatcher
+     */
     public Map<File, Score> score(List<Signature> signatures, List<File> files) throws IOException {
         Map<File, Score> scores = new HashMap<File,Score>();
 
+        SignatureMatcher matcher = new SignatureMatcher(signatures, scoreLimit);
+        Window window = matcher.newWindow();
         for (File file : files) {
             if (!file.isFile()) {
                 continue;
             }
-            Score score = score(signatures,file);
+            Score score = matcher.score(file, window);
             scores.put(file,score);
         }
         return scores;
 
     }
 
+    /**
+     * Score a single file against the signatures.
+     *
+     * @param signatures the signatures to score against
+     * @param file       the file to score
+     * @return the score of the file
+     * @throws IOException if the file could not be read
+     * @see SignatureMatcher
+     */
     public Score score(List<Signature> signatures, File file) throws IOException {
+        return new SignatureMatcher(signatures, scoreLimit).score(file);
+    }
 
-        Score score = new Score();
-        for (Signature signature : signatures) {
-
-            int tempscore = 0;
-            int quality = signature.getGeneral().getNumberOfFiles();
-            RandomAccessFile rfile = null;
-            try {
-
-                rfile = new RandomAccessFile(file, "r");
-                for (BytePattern bytePattern : signature.getFrontBlock().pattern) {
-                    byte[] fromFile = new byte[bytePattern.getPattern().length];
-                    rfile.seek(bytePattern.getOffset());
-                    rfile.read(fromFile);
-                    if (Arrays.equals(bytePattern.getPattern(), fromFile)) {
-                        tempscore += fromFile.length;
-                    } else {
-                        tempscore -= fromFile.length;
-                    }
-                }
-                for (BytePattern bytePattern : signature.getEndBlock().pattern) {
-                    byte[] fromFile = new byte[bytePattern.getPattern().length];
-                    rfile.seek(rfile.length() - SIZE + bytePattern.getOffset());
-                    rfile.read(fromFile);
-                    if (Arrays.equals(bytePattern.getPattern(), fromFile)) {
-                        tempscore += fromFile.length;
-                    } else {
-                        tempscore -= fromFile.length;
-                    }
+    /**
+     * Score the files against the signatures, using a number of threads.
+     *
+     * @param signatures the signatures to score against
+     * @param files      the files to score. Anything that is not a file is skipped
+     * @param threads    the number of threads to score with
+     * @return the score of each file
+     * @throws IOException if a file could not be read
+     * @see #score(java.util.List, java.util.List, int, ScoreCallback)
+     */
+    public Map<File, Score> score(List<Signature> signatures, List<File> files, int threads) throws IOException {
+        final Map<File, Score> scores = new ConcurrentHashMap<File, Score>();
+        score(signatures, files, threads, new ScoreCallback() {
+            public void scored(File file, Score score) {
+                scores.put(file, score);
+            }
+        });
+        return scores;
+    }
+
+    /**
+     * Score the files against the signatures, using a number of threads, and hand each score to the callback as soon
+     * as it is computed. The signatures are compiled once and shared, and each thread reuses its own window. Only a
+     * bounded number of files are queued at any time, so the callback can stream the scores of any number of files.
+     * <p/>
+     * If a file can not be read, or the scoring or the callback fails, no more files are scored, and the first
+     * exception is thrown once the running threads are done.
+     *
+     * @param signatures the signatures to score against
+     * @param files      the files to score. Anything that is not a file is skipped
+     * @param threads    the number of threads to score with
+     * @param callback   receives the score of each file. Called from several threads at once
+     * @throws IOException if a file could not be read
+     */
+    public void score(List<Signature> signatures, List<File> files, int threads, final ScoreCallback callback)
+            throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1, not " + threads);
+        }
+        final SignatureMatcher matcher = new SignatureMatcher(signatures, scoreLimit);
+        final ThreadLocal<Window> windows = new ThreadLocal<Window>() {
+            @Override
+            protected Window initialValue() {
+                return matcher.newWindow();
+            }
+        };
+        //IOExceptions and RuntimeExceptions, as a pool thread would otherwise drop the file silently
+        final List<Exception> failures = Collections.synchronizedList(new ArrayList<Exception>());
+
+        //When the queue is full, the submitting thread scores the file itself, which throttles the submission
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                                             new ArrayBlockingQueue<Runnable>(threads * QUEUE_PER_THREAD),
+                                                             new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (final File file : files) {
+                if (!failures.isEmpty()) {
+                    break;
                 }
-                score.add(quality * tempscore,signature);
-            } finally {
-                if (rfile != null) {
-                    rfile.close();
+                if (!file.isFile()) {
+                    continue;
                 }
+                executor.execute(new Runnable() {
+                    public void run() {
+                        if (!failures.isEmpty()) {
+                            return;
+                        }
+                        try {
+                            callback.scored(file, matcher.score(file, windows.get()));
+                        } catch (IOException e) {
+                            failures.add(e);
+                        } catch (RuntimeException e) {
+                            failures.add(e);
+                        }
+                    }
+                });
+            }
+        } finally {
+            shutdown(executor);
+        }
+        if (!failures.isEmpty()) {
+            Exception failure = failures.get(0);
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
             }
+            throw (RuntimeException) failure;
+        }
+    }
 
+    private static void shutdown(ThreadPoolExecutor executor) throws InterruptedIOException {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                //Keep waiting for the queued files
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the worker threads");
         }
-        return score;
     }
 
     public Signature relearn(Signature signature, List<File> files) throws IOException {
@@ -128,7 +249,8 @@ public class Brain {
     }
 
     /**
-     * Update the signature, so that it matches all the provided files, but still matches everything it matched before
+     * Update the signature, so that it matches all the provided files, but still matches everything it matched before.
+     * The block size of the signature is kept, and patterns with a range are left as they are.
      *
      * @param signature the signature to update. Will be updated inline.
      * @param files     the files to base the update on
@@ -137,42 +259,53 @@ public class Brain {
      * @see #learn(java.util.List)
      */
     public Signature relearn(Signature signature, File... files) throws IOException {
+        //First, parse the signature to the result of an earlier "learn", then continue the learning from that point
+        Learning learning = new Learning(signature);
+        learnFiles(learning, files);
+        learning.addPatterns(signature);
 
-        //First, we look at the header
-        //first, parse the signature to the result of an earlier "learn"
-        boolean[] headerfound = new boolean[SIZE];
-        byte[] patternhead = new byte[headerfound.length];
-        for (int i = 0; i < headerfound.length; i++) {
-            headerfound[i] = true;
-        }
-        for (BytePattern bytePattern : signature.getFrontBlock().pattern) {
-            for (int i = 0; i < bytePattern.getPattern().length; i++) {
-                headerfound[i + bytePattern.getOffset()] = false;
-                patternhead[i + bytePattern.getOffset()] = bytePattern.getPattern()[i];
-            }
-        }
-        //Then attempt to continue the learning, from the old point
-        relearnFile(signature, headerfound, patternhead, true, files);
+        signature.getGeneral().setNumberOfFiles(signature.getGeneral().getNumberOfFiles() + files.length);
 
-        //Then do the same for the footer
+        return signature;
+    }
 
-        boolean[] footerfound = new boolean[SIZE];
-        byte[] patternfoot = new byte[footerfound.length];
+    /**
+     * Update the signature, so that it matches all the provided files, but still matches everything it matched before,
+     * using a number of threads. The result is the same as {@link #relearn(Signature, java.util.List)}.
+     *
+     * @param signature the signature to update. Will be updated inline.
+     * @param files     the files to base the update on
+     * @param threads   the number of threads to learn with
+     * @return the signature updated.
+     * @throws IOException on file reading errors
+     * @see #learn(java.util.List, int)
+     */
+    public Signature relearn(Signature signature, List<File> files, int threads) throws IOException {
+        Learning learning = new Learning(signature);
+        learnFiles(learning, files, threads);
+        learning.addPatterns(signature);
 
-        for (int i = 0; i < footerfound.length; i++) {
-            footerfound[i] = true;
-        }
+        signature.getGeneral().setNumberOfFiles(signature.getGeneral().getNumberOfFiles() + files.size());
 
-        for (BytePattern bytePattern : signature.getEndBlock().pattern) {
-            for (int i = 0; i < bytePattern.getPattern().length; i++) {
-                footerfound[i + bytePattern.getOffset()] = false;
-                patternfoot[i + bytePattern.getOffset()] = bytePattern.getPattern()[i];
-            }
-        }
-        //attempt to continue learning from the old point, but now for the footer
-        relearnFile(signature, footerfound, patternfoot, false, files);
+        return signature;
+    }
 
-        signature.getGeneral().setNumberOfFiles(signature.getGeneral().getNumberOfFiles() + files.length);
+    /**
+     * Update the signature, so that it matches all the provided items, but still matches everything it matched before.
+     * The items are streamed, so items in archives, such as zip entries, are learned from without extracting them.
+     *
+     * @param signature the signature to update. Will be updated inline.
+     * @param items     the items to base the update on
+     * @return the signature updated.
+     * @throws IOException on item reading errors
+     * @see #relearn(Signature, java.io.File...)
+     */
+    public Signature relearnItems(Signature signature, Iterable<? extends CorpusItem> items) throws IOException {
+        Learning learning = new Learning(signature);
+        int count = learnItems(learning, items);
+        learning.addPatterns(signature);
+
+        signature.getGeneral().setNumberOfFiles(signature.getGeneral().getNumberOfFiles() + count);
 
         return signature;
     }
@@ -200,111 +333,130 @@ public class Brain {
     public Signature learn(File... files) throws IOException {
         Signature signature = new Signature();
         signature.getGeneral().setNumberOfFiles(files.length);
+        signature.getGeneral().setBlockSize(blockSize);
 
-        boolean[] foundBytesInHeader = new boolean[SIZE]; //true means the value in result does not matter. Defaults to false
-        relearnFile(signature, foundBytesInHeader, null, true,  files);
-
-        boolean[] foundBytesInTrailer = new boolean[SIZE]; //true means the value in result does not matter. Defaults to false
-        relearnFile(signature, foundBytesInTrailer, null, false, files);
+        Learning learning = new Learning(blockSize);
+        learnFiles(learning, files);
+        learning.addPatterns(signature);
         return signature;
     }
 
-
     /**
-     * This is the method used for discovering and parsing the signatures in the files
+     * Construct a new signature based on the provided files, using a number of threads. The files are split into a
+     * partition per thread, each partition is learned on its own, and what was learned is merged in the end. The
+     * signature is the same as when learning from the files one by one.
      *
-     * @param signature the signature to work on
-     * @param found     the byte locations that have already been found. True denote that the byte is not to be used in the
-     *                  signature, as one of the files does not match. Should all be false, if no learning has taken place already
-     * @param result    The result of an earlier run. Should be null, if no earlier run.
-     * @param header    Should the header or footer be examined. True means header
-     * @param files     the files to examine
-     * @throws IOException if file reading fails.
+     * @param files   the files to use
+     * @param threads the number of threads to learn with
+     * @return the new Signature
+     * @throws IOException if an error occurred when reading the files. The other threads are stopped
+     * @see #learn(java.util.List)
      */
-    private void relearnFile(Signature signature, boolean[] found, byte[] result, boolean header,
-                             File... files) throws IOException {
-        //Scan the files, and find matches. Result and found is updated inline
-        result = scanFile(found, files, result, header);
-        if( result == null ) return;
-
-        //Scan for sequences, to properly write the signature
-        boolean sequence = false;
-        byte[] sequenceArray = new byte[result.length];
-        int length = 0;
-        for (int i = 0; i < found.length; i++) {
-            if (found[i] == false) {//useful byte
-                sequence = true;
-                sequenceArray[length++] = result[i];
-            } else {
-                if (sequence) {//so this is the end of a sequence
-                    List<BytePattern> list;
-                    if (header) {
-                        list = signature.getFrontBlock().pattern;
-                    } else {
-                        list = signature.getEndBlock().pattern;
-                    }
-                    list.add(new BytePattern(i - length, Arrays.copyOfRange(sequenceArray, 0, length)));
-                    sequence = false;
-                    length = 0;
-                }
-            }
-        }
-    }
+    public Signature learn(List<File> files, int threads) throws IOException {
+        Signature signature = new Signature();
+        signature.getGeneral().setNumberOfFiles(files.size());
+        signature.getGeneral().setBlockSize(blockSize);
 
+        Learning learning = new Learning(blockSize);
+        learnFiles(learning, files, threads);
+        learning.addPatterns(signature);
+        return signature;
+    }
 
     /**
-     * Scan the files, and find matches in the header or trailer. As the scanning goes on, the "found" array is updated.
-     * It denotes which locations are identical in all the files scanned so far. The "result" array denote the values
-     * read, that match all files. Values in locations that are not "false" in "found" should be disregarded.
-     * @param found the array of which locations match.
-     * @param files the files to scan
-     * @param result the result array of bytes
-     * @param header if the header or footer should be scanned
-     * @return the result array, which is not useful without the found array. Both have been updated by reference during
-     * the run
-     * @throws IOException If the file reading failed.
+     * Construct a new signature based on the provided items, such as the items of a
+     * {@link org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora} or the entries of a zip file. The items are streamed,
+     * and only the head and tail of each item are kept, so nothing is extracted to disk.
+     *
+     * @param items the items to use
+     * @return the new Signature
+     * @throws IOException if an error occurred when reading the items.
+     * @see Samples
      */
-    private byte[] scanFile(boolean[] found, File[] files, byte[] result, boolean header) throws IOException {
-        int size = found.length;
+    public Signature learnItems(Iterable<? extends CorpusItem> items) throws IOException {
+        Signature signature = new Signature();
+        signature.getGeneral().setBlockSize(blockSize);
+
+        Learning learning = new Learning(blockSize);
+        signature.getGeneral().setNumberOfFiles(learnItems(learning, items));
+        learning.addPatterns(signature);
+        return signature;
+    }
+
+    private static void learnFiles(Learning learning, File[] files) throws IOException {
         for (File file : files) {
             if (!file.isFile()) {
                 continue;
             }
-            RandomAccessFile reader = new RandomAccessFile(file, "r");
-            byte[] temp = new byte[size];
+            learning.add(file);
+        }
+    }
 
-            if (header) {
-                reader.seek(0);
-            } else {
-                if (reader.length() > size) {
-                    reader.seek(reader.length() - size);
-                } else {
-                    continue;
-                }
+    private static void learnFiles(Learning learning, List<File> files, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1, not " + threads);
+        }
+        int partitions = Math.min(threads, files.size());
+        if (partitions <= 1) {
+            learnFiles(learning, files.toArray(new File[files.size()]));
+            return;
+        }
+        final int size = learning.getSize();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(partitions, partitions, 0L, TimeUnit.MILLISECONDS,
+                                                             new LinkedBlockingQueue<Runnable>());
+        List<Future<Learning>> learned = new ArrayList<Future<Learning>>(partitions);
+        try {
+            for (int i = 0; i < partitions; i++) {
+                final List<File> partition = files.subList(files.size() * i / partitions,
+                                                           files.size() * (i + 1) / partitions);
+                learned.add(executor.submit(new Callable<Learning>() {
+                    public Learning call() throws IOException {
+                        Learning part = new Learning(size);
+                        learnFiles(part, partition.toArray(new File[partition.size()]));
+                        return part;
+                    }
+                }));
             }
-            int length = reader.read(temp);
-            reader.close();
-            if (length < size) {//if we could not read enough. Not likely to happen
-                for (int i = length; i < found.length; i++) {
-                    found[i] = true;
-                }
+            for (Future<Learning> part : learned) {
+                learning.merge(get(part));
             }
-            if (result == null) {
-                result = temp;
-            } else {
-                for (int i = 0; i < temp.length; i++) {
-                    if (!found[i]) {
-                        byte justRead = temp[i];
-                        byte resultByte = result[i];
-                        if (justRead != resultByte) {
-                            found[i] = true;
-                        }
-                    }
-                }
+        } finally {
+            //Stops the other partitions, if one failed
+            for (Future<Learning> part : learned) {
+                part.cancel(true);
             }
+            shutdown(executor);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the worker threads");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
 
+    private static int learnItems(Learning learning, Iterable<? extends CorpusItem> items) throws IOException {
+        int count = 0;
+        for (CorpusItem item : items) {
+            learning.add(item);
+            count++;
         }
-        return result;
+        return count;
     }
 
 
@@ -0,0 +1,297 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.BytePattern;
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.opf_labs.fmts.corpora.CorpusItem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Discovers candidate signatures in a corpus of mixed, unknown formats, such as all the items of a
+ * {@link org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora}. The first bytes of every item are counted in a prefix
+ * trie, and every prefix shared by enough items becomes a candidate signature, with the prefix as its only pattern.
+ * The candidates can then be named, and improved with {@link Brain#relearn(Signature, java.io.File...)}.
+ * <p/>
+ * Only the first bytes of each item are read, and the trie is held in primitive arrays of a fixed size, so any number
+ * of items can be streamed through in one pass. When the trie is full, the prefixes shared by the fewest items are
+ * pruned. A prefix that was pruned and seen again is counted from zero, so the counts of the prefixes shared by only a
+ * few items can be low, while the prefixes shared by many items stay in the trie.
+ * <p/>
+ * A discovery is not thread safe.
+ */
+public class Discovery {
+
+    /**
+     * The default number of bytes of each item that are counted
+     */
+    public static final int DEFAULT_DEPTH = 16;
+
+    /**
+     * The default number of prefixes held in the trie
+     */
+    public static final int DEFAULT_MAX_NODES = 1 << 20;
+
+    private static final long EMPTY = 0;
+
+    private final int depth;
+
+    private final int maxNodes;
+
+    private final byte[] head;
+
+    /*
+     * The trie. Node 0 is the root, every other node is a prefix, identified by its parent and its last byte. Nodes
+     * are created after their parents, so a parent always has a lower number than its children.
+     */
+    private final int[] counts;
+    private final int[] parents;
+    private final byte[] labels;
+    private int nodes = 1;
+
+    /*
+     * The children of the nodes, as an open addressing hash table from parent and byte to child
+     */
+    private final long[] keys;
+    private final int[] children;
+    private final int shift;
+
+    public Discovery() {
+        this(DEFAULT_DEPTH, DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Create a new discovery
+     *
+     * @param depth    the number of bytes of each item to count, which is also the longest pattern discovered
+     * @param maxNodes the number of prefixes held in the trie, which bounds the memory used
+     */
+    public Discovery(int depth, int maxNodes) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("The depth must be at least 1, not " + depth);
+        }
+        if (maxNodes <= depth) {
+            throw new IllegalArgumentException("The trie must hold more than " + depth + " nodes, not " + maxNodes);
+        }
+        this.depth = depth;
+        this.maxNodes = maxNodes;
+        head = new byte[depth];
+        counts = new int[maxNodes];
+        parents = new int[maxNodes];
+        labels = new byte[maxNodes];
+        //At most half full
+        int bits = 32 - Integer.numberOfLeadingZeros(maxNodes * 2 - 1);
+        keys = new long[1 << bits];
+        children = new int[1 << bits];
+        shift = 64 - bits;
+    }
+
+    /**
+     * Count the first bytes of the item
+     *
+     * @param item the item to count
+     * @throws IOException if the item could not be read
+     */
+    public void add(CorpusItem item) throws IOException {
+        add(item.getStream());
+    }
+
+    /**
+     * Count the first bytes of the file
+     *
+     * @param file the file to count
+     * @throws IOException if the file could not be read
+     */
+    public void add(File file) throws IOException {
+        add(new FileInputStream(file));
+    }
+
+    private void add(InputStream in) throws IOException {
+        try {
+            int length = 0;
+            int count;
+            while (length < head.length && (count = in.read(head, length, head.length - length)) >= 0) {
+                length += count;
+            }
+            add(head, length);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Count the first bytes of all the items
+     *
+     * @param items the items to count
+     * @throws IOException if an item could not be read
+     */
+    public void addAll(Iterable<? extends CorpusItem> items) throws IOException {
+        for (CorpusItem item : items) {
+            add(item);
+        }
+    }
+
+    /**
+     * Count the first bytes of an item
+     *
+     * @param bytes  the first bytes of the item
+     * @param length the number of valid bytes. Only the first bytes, up to the depth of this discovery, are counted
+     */
+    public void add(byte[] bytes, int length) {
+        int prefix = Math.min(depth, length);
+        if (nodes + prefix > maxNodes) {
+            prune();
+        }
+        counts[0]++;
+        int node = 0;
+        for (int i = 0; i < prefix; i++) {
+            node = child(node, bytes[i]);
+            counts[node]++;
+        }
+    }
+
+    /**
+     * @return the number of items counted
+     */
+    public int getCount() {
+        return counts[0];
+    }
+
+    /**
+     * The candidate signatures of the items counted so far. A prefix is a candidate if it is long enough, and enough
+     * items start with it, not counting the items that start with a longer candidate. Each candidate has the prefix
+     * as its only pattern, and is given the number of items starting with the prefix as its number of files.
+     *
+     * @param minItems  the number of items a candidate must cover
+     * @param minLength the shortest prefix that can be a candidate
+     * @return the candidates, those covering the most items first
+     */
+    public List<Signature> signatures(int minItems, int minLength) {
+        if (minItems < 1) {
+            throw new IllegalArgumentException("A candidate must cover at least 1 item, not " + minItems);
+        }
+        //Parents are numbered before their children, so the lengths are found top down
+        int[] lengths = new int[nodes];
+        for (int node = 1; node < nodes; node++) {
+            lengths[node] = lengths[parents[node]] + 1;
+        }
+        //and the candidates bottom up, from the items covered by the candidates below each node
+        boolean[] candidates = new boolean[nodes];
+        int[] covered = new int[nodes];
+        for (int node = nodes - 1; node > 0; node--) {
+            candidates[node] = counts[node] - covered[node] >= minItems && lengths[node] >= minLength;
+            covered[parents[node]] += candidates[node] ? counts[node] : covered[node];
+        }
+
+        List<Signature> signatures = new ArrayList<Signature>();
+        for (int node = 1; node < nodes; node++) {
+            if (!candidates[node]) {
+                continue;
+            }
+            byte[] prefix = prefix(node);
+            BytePattern pattern = new BytePattern(0, prefix);
+            Signature signature = new Signature();
+            signature.getInfo().setFileType("Unknown format starting with 0x" + pattern.getBytes());
+            signature.getGeneral().setNumberOfFiles(counts[node]);
+            signature.getFrontBlock().pattern.add(pattern);
+            signatures.add(signature);
+        }
+        Collections.sort(signatures, new Comparator<Signature>() {
+            public int compare(Signature o1, Signature o2) {
+                int n1 = o1.getGeneral().getNumberOfFiles();
+                int n2 = o2.getGeneral().getNumberOfFiles();
+                return n1 > n2 ? -1 : (n1 == n2 ? 0 : 1);
+            }
+        });
+        return signatures;
+    }
+
+    private byte[] prefix(int node) {
+        int length = 0;
+        for (int n = node; n != 0; n = parents[n]) {
+            length++;
+        }
+        byte[] prefix = new byte[length];
+        for (int n = node; n != 0; n = parents[n]) {
+            prefix[--length] = labels[n];
+        }
+        return prefix;
+    }
+
+    /**
+     * Find the child of the node, creating it if needed
+     */
+    private int child(int parent, byte label) {
+        long key = key(parent, label);
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return children[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        int child = nodes++;
+        counts[child] = 0;
+        parents[child] = parent;
+        labels[child] = label;
+        keys[slot] = key;
+        children[slot] = child;
+        return child;
+    }
+
+    private static long key(int parent, byte label) {
+        //Never EMPTY
+        return (((long) parent << 8) | (label & 0xff)) + 1;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    /**
+     * Remove the prefixes shared by the fewest items, until at least a quarter of the trie is free. As a prefix is
+     * counted at least as often as any longer prefix, the prefixes kept always have their parents kept too.
+     */
+    private void prune() {
+        long pruneBelow = 1;
+        do {
+            pruneBelow *= 2;
+            int[] renumbered = new int[nodes];
+            int kept = 1;
+            for (int node = 1; node < nodes; node++) {
+                int parent = renumbered[parents[node]];
+                if (counts[node] >= pruneBelow && parent >= 0) {
+                    //Nodes only move down, so the nodes not yet renumbered are left untouched
+                    counts[kept] = counts[node];
+                    parents[kept] = parent;
+                    labels[kept] = labels[node];
+                    renumbered[node] = kept++;
+                } else {
+                    renumbered[node] = -1;
+                }
+            }
+            nodes = kept;
+        } while (nodes > maxNodes - maxNodes / 4 || nodes + depth > maxNodes);
+        rebuild();
+    }
+
+    private void rebuild() {
+        Arrays.fill(keys, EMPTY);
+        for (int node = 1; node < nodes; node++) {
+            long key = key(parents[node], labels[node]);
+            int slot = slot(key);
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            children[slot] = node;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.BytePattern;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The bytes that are identical at each location of the header or trailer of all the files scanned so far.
+ * <p/>
+ * The locations that do not match are kept as a bitset, one bit per location packed into longs, and files are
+ * compared eight bytes at a time, by XOR'ing longs read from the file and from the result. Words where every location
+ * has already stopped matching are skipped, so once learning has settled, each file costs little more than a pass
+ * over the bitset.
+ */
+final class Intersection {
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    /**
+     * Gathers the low bit of each byte into the top byte, the low bit of byte i ending up as bit 56 + i
+     */
+    private static final long GATHER = 0x0102040810204080L;
+
+    private final int size;
+
+    /**
+     * The locations that do not match. A set bit means the value in result does not matter
+     */
+    private final long[] found;
+
+    /**
+     * The values read, that match all files. Values in locations that are set in found should be disregarded
+     */
+    private final byte[] result;
+
+    private final ByteBuffer resultLanes;
+
+    /**
+     * Whether any file has been scanned yet
+     */
+    private boolean started = false;
+
+    /**
+     * Create a new intersection, where nothing has been scanned yet
+     *
+     * @param size the number of bytes to intersect
+     */
+    Intersection(int size) {
+        this.size = size;
+        found = new long[(size + 63) >>> 6];
+        result = new byte[size];
+        resultLanes = lanes(result);
+    }
+
+    /**
+     * Create an intersection holding the result of an earlier "learn", where only the patterns match. Patterns with a
+     * range are not at a known location, so they are left out.
+     *
+     * @param size     the number of bytes to intersect
+     * @param patterns the patterns learned earlier
+     */
+    Intersection(int size, List<BytePattern> patterns) {
+        this(size);
+        setFound(0, size);
+        for (BytePattern bytePattern : patterns) {
+            if (bytePattern.getRange() > 0) {
+                continue;
+            }
+            for (int i = 0; i < bytePattern.getPattern().length; i++) {
+                int location = i + bytePattern.getOffset();
+                found[location >>> 6] &= ~(1L << location);
+                result[location] = bytePattern.getPattern()[i];
+            }
+        }
+        started = true;
+    }
+
+    /**
+     * Wrap a buffer so it can be read eight bytes at a time by {@link #add(java.nio.ByteBuffer, int)}
+     *
+     * @param buffer the buffer to wrap, at least as large as the intersection
+     * @return the wrapped buffer
+     */
+    static ByteBuffer lanes(byte[] buffer) {
+        return ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Intersect with the bytes of a file. Locations beyond the bytes read can not match.
+     *
+     * @param bytes  the bytes read from the file, wrapped by {@link #lanes(byte[])}
+     * @param length the number of valid bytes
+     */
+    void add(ByteBuffer bytes, int length) {
+        setFound(length, size);
+        if (!started) {
+            System.arraycopy(bytes.array(), 0, result, 0, length);
+            started = true;
+            return;
+        }
+        int lanes = length >>> 3;
+        for (int lane = 0; lane < lanes; lane++) {
+            int word = lane >>> 3;
+            if (found[word] == -1L) {
+                //Nothing left to match in the next 64 bytes
+                lane |= 7;
+                continue;
+            }
+            long diff = bytes.getLong(lane << 3) ^ resultLanes.getLong(lane << 3);
+            if (diff != 0) {
+                found[word] |= differingBytes(diff) << ((lane & 7) << 3);
+            }
+        }
+        byte[] array = bytes.array();
+        for (int i = lanes << 3; i < length; i++) {
+            if (array[i] != result[i]) {
+                found[i >>> 6] |= 1L << i;
+            }
+        }
+    }
+
+    /**
+     * Intersect with the result of learning from other files. Merging the intersections of a number of partitions of
+     * the files, in any order, gives the same locations and values as intersecting all the files one by one.
+     *
+     * @param other the intersection to merge in, of the same size
+     */
+    void merge(Intersection other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Can not merge intersections of " + size + " and " + other.size + " bytes");
+        }
+        if (!other.started) {
+            return;
+        }
+        for (int word = 0; word < found.length; word++) {
+            found[word] |= other.found[word];
+        }
+        add(other.resultLanes, size);
+    }
+
+    /**
+     * @param diff the XOR of eight bytes
+     * @return a mask with bit i set if byte i of the diff is not zero
+     */
+    private static long differingBytes(long diff) {
+        diff |= diff >>> 4;
+        diff |= diff >>> 2;
+        diff |= diff >>> 1;
+        return ((diff & LOW_BITS) * GATHER) >>> 56;
+    }
+
+    private void setFound(int from, int to) {
+        for (int i = from; i < to; i++) {
+            found[i >>> 6] |= 1L << i;
+        }
+    }
+
+    private boolean isFound(int location) {
+        return (found[location >>> 6] & (1L << location)) != 0;
+    }
+
+    /**
+     * Scan for sequences of matching bytes, and add them as patterns. Nothing is added if no files were scanned.
+     *
+     * @param patterns the list to add the patterns to
+     */
+    void addPatterns(List<BytePattern> patterns) {
+        if (!started) {
+            return;
+        }
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            if (!isFound(i)) {//useful byte
+                length++;
+            } else if (length > 0) {//so this is the end of a sequence
+                patterns.add(new BytePattern(i - length, Arrays.copyOfRange(result, i - length, i)));
+                length = 0;
+            }
+        }
+    }
+}
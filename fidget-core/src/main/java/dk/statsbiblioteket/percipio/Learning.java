@@ -0,0 +1,124 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.opf_labs.fmts.corpora.CorpusItem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The state of learning a signature from a number of samples: the intersections of the headers and the trailers of
+ * the samples so far. Each sample is read once, the header and trailer together, into a window that is reused for
+ * every sample, so no garbage is created per sample. Only samples longer than the block size, with a whole block read
+ * into the tail, are used for the trailer.
+ * <p/>
+ * Samples can be files, or items of a corpus, such as the entries of a zip file, which are streamed rather than
+ * extracted. Learnings of separate partitions of the samples can be merged, so they can be learned in parallel.
+ */
+final class Learning {
+
+    private final int size;
+
+    private final Intersection header;
+
+    private final Intersection footer;
+
+    private final Window window;
+
+    private final ByteBuffer head;
+
+    private final ByteBuffer tail;
+
+    /**
+     * Start learning a new signature
+     *
+     * @param size the block size
+     */
+    Learning(int size) {
+        this(size, new Intersection(size), new Intersection(size));
+    }
+
+    /**
+     * Continue learning from the result of an earlier "learn"
+     *
+     * @param signature the signature learned earlier
+     */
+    Learning(Signature signature) {
+        this(signature.getGeneral().getBlockSize(),
+             new Intersection(signature.getGeneral().getBlockSize(), signature.getFrontBlock().pattern),
+             new Intersection(signature.getGeneral().getBlockSize(), signature.getEndBlock().pattern));
+    }
+
+    private Learning(int size, Intersection header, Intersection footer) {
+        this.size = size;
+        this.header = header;
+        this.footer = footer;
+        window = new Window(size, size);
+        head = Intersection.lanes(window.getHead());
+        tail = Intersection.lanes(window.getTail());
+    }
+
+    /**
+     * Learn from a file
+     *
+     * @param file the file to learn from
+     * @throws IOException if the file could not be read
+     */
+    void add(File file) throws IOException {
+        window.read(file);
+        intersect();
+    }
+
+    /**
+     * Learn from an item, streaming its content
+     *
+     * @param item the item to learn from
+     * @throws IOException if the item could not be read
+     */
+    void add(CorpusItem item) throws IOException {
+        InputStream in = item.getStream();
+        try {
+            window.read(in, item.getSize());
+        } finally {
+            in.close();
+        }
+        intersect();
+    }
+
+    private void intersect() {
+        header.add(head, window.getHeadLength());
+        //The tail is short of a whole block if the stream was shorter than its expected length, and skipped into it
+        if (window.getLength() > size && window.getTailLength() == size) {
+            footer.add(tail, size);
+        }
+    }
+
+    /**
+     * Merge in what was learned from other samples, for learning from partitions of the samples in parallel
+     *
+     * @param other the learning to merge in, of the same block size
+     */
+    void merge(Learning other) {
+        header.merge(other.header);
+        footer.merge(other.footer);
+    }
+
+    /**
+     * @return the block size
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Add the patterns learned to the signature
+     *
+     * @param signature the signature to add the patterns to
+     */
+    void addPatterns(Signature signature) {
+        header.addPatterns(signature.getFrontBlock().pattern);
+        footer.addPatterns(signature.getEndBlock().pattern);
+    }
+}
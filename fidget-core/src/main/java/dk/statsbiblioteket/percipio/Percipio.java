@@ -1,9 +1,11 @@
 package dk.statsbiblioteket.percipio;
 
+import com.yammer.metrics.reporting.ConsoleReporter;
 import dk.statsbiblioteket.percipio.Brain;
 import dk.statsbiblioteket.percipio.datastructures.BytePattern;
 import dk.statsbiblioteket.percipio.datastructures.Score;
 import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.opf_labs.fmts.corpora.CorpusItem;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -17,6 +19,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.ZipFile;
 
 /**
  * Created by IntelliJ IDEA.
@@ -27,6 +30,8 @@ import java.util.Map;
  */
 public class Percipio {
 
+    private static final String USAGE = "percipio (learn|relearn|sniff|discover|compile) [-s SigFileName] [-p PackFileName] [-n NumberOfMatches] [-c MinClusterSize] [-t NumberOfThreads] [-b BlockSize] [-z] [-M] [-m] filenamess...";
+
     public static void main(String... args) throws IOException, JAXBException {
 
         JAXBContext context = JAXBContext.newInstance(Signature.class);
@@ -35,16 +40,22 @@ public class Percipio {
         Unmarshaller unmarshaller = context.createUnmarshaller();
         
         if( args.length == 0 || "-h".equals(args[0]) ){
-        	System.out.println("percipio (learn|relearn|sniff) [-s SigFileName] [-n NumberOfMatches] [-M] filenamess...");
+        	System.out.println(USAGE);
         	return;
         }
 
         String command = args[0];
 
         String signatureArg = "";
+        String packArg = null;
         int numberOfMatchesArg = 5;
+        int numberOfThreadsArg = 1;
+        int blockSizeArg = Brain.SIZE;
+        int minClusterSizeArg = 100;
         ArrayList<File> files = new ArrayList<File>();
         boolean useMimeInfoFormat = false;
+        boolean printMetrics = false;
+        boolean zipSamples = false;
 
         for (int i = 1; i < args.length; i++) {
             String arg = args[i];
@@ -53,14 +64,43 @@ public class Percipio {
                 signatureArg = args[i];
                 continue;
             }
+            if (arg.equals("-p")){
+                i++;
+                packArg = args[i];
+                continue;
+            }
             if (arg.equals("-n")){
                 i++;
                 numberOfMatchesArg = new Integer(args[i]);
                 continue;
             }
+            if (arg.equals("-t")){
+                i++;
+                numberOfThreadsArg = new Integer(args[i]);
+                continue;
+            }
+            if (arg.equals("-b")){
+                i++;
+                blockSizeArg = new Integer(args[i]);
+                continue;
+            }
+            if (arg.equals("-c")){
+                i++;
+                minClusterSizeArg = new Integer(args[i]);
+                continue;
+            }
             if (arg.equals("-M") ) {
             	useMimeInfoFormat = true;
             }
+            if (arg.equals("-m")) {
+                printMetrics = true;
+                continue;
+            }
+            if (arg.equals("-z")) {
+                //Learn from the files inside the zip files given, without extracting them
+                zipSamples = true;
+                continue;
+            }
 
             File file = new File(arg);
             if (file.isFile()){//TODO recursion
@@ -70,11 +110,17 @@ public class Percipio {
 
 
 
-        Brain brain = new Brain();
+        //Only the matches printed are kept for each file
+        Brain brain = new Brain(blockSizeArg, numberOfMatchesArg + 1);
 
         if (command.equals("learn")){
-            Signature signature = brain.learn(files);
-            brain.test(files,signature);
+            Signature signature;
+            if (zipSamples) {
+                signature = learnZips(brain, null, files);
+            } else {
+                signature = brain.learn(files, numberOfThreadsArg);
+                brain.test(files,signature);
+            }
             
             if( useMimeInfoFormat ) {
             	Percipio.printMimeInfoSignature(signature);
@@ -86,8 +132,12 @@ public class Percipio {
         }
         if (command.equals("relearn")){
             Signature signature = (Signature)unmarshaller.unmarshal(System.in);
-            signature = brain.relearn(signature,files);
-            brain.test(files,signature);
+            if (zipSamples) {
+                signature = learnZips(brain, signature, files);
+            } else {
+                signature = brain.relearn(signature, files, numberOfThreadsArg);
+                brain.test(files,signature);
+            }
 
             StringWriter writer = new StringWriter();
             marshaller.marshal(signature,writer);
@@ -97,16 +147,98 @@ public class Percipio {
         	System.out.println("signatureArg: "+signatureArg);
             List<Signature> signatures = parseSignatures(unmarshaller, signatureArg);
 
-            Map<File, Score> scores = brain.score(signatures,files);
-            System.out.println("size() = "+scores.size());
-            for (File file : scores.keySet()) {
-                printScores(file,scores.get(file), numberOfMatchesArg);
+            if (numberOfThreadsArg > 1) {
+                //Print the scores as they come in, rather than holding them all
+                final int numberOfMatches = numberOfMatchesArg;
+                brain.score(signatures, files, numberOfThreadsArg, new ScoreCallback() {
+                    public void scored(File file, Score score) {
+                        synchronized (System.out) {
+                            printScores(file, score, numberOfMatches);
+                        }
+                    }
+                });
+            } else {
+                Map<File, Score> scores = brain.score(signatures,files);
+                System.out.println("size() = "+scores.size());
+                for (File file : scores.keySet()) {
+                    printScores(file,scores.get(file), numberOfMatchesArg);
+                }
             }
             
 
         }
+        if (command.equals("discover")){
+            List<Signature> signatures = discover(files, zipSamples, minClusterSizeArg);
+            File signatureFolder = new File(signatureArg);
+            for (int i = 0; i < signatures.size(); i++) {
+                if (signatureFolder.isDirectory()) {
+                    //Written so that sniff can load them with the same -s
+                    marshaller.marshal(signatures.get(i), new File(signatureFolder, "discovered-" + i + ".sig"));
+                } else {
+                    StringWriter writer = new StringWriter();
+                    marshaller.marshal(signatures.get(i), writer);
+                    System.out.println(writer.toString());
+                }
+            }
+        }
 
+        if (command.equals("compile")){
+            if (packArg == null) {
+                //There is nowhere to write the pack to
+                System.out.println(USAGE);
+                return;
+            }
+            List<Signature> signatures = parseSignatures(unmarshaller, signatureArg);
+            SignaturePack.write(signatures, new File(packArg));
+            System.out.println("Compiled " + signatures.size() + " signatures into " + packArg);
+        }
 
+        if (printMetrics) {
+            //Per stage latencies, on stderr to keep them out of the signatures and scores
+            new ConsoleReporter(System.err).run();
+        }
+    }
+
+    /**
+     * Learn from the files in the zip files, or relearn if a signature is given
+     */
+    private static Signature learnZips(Brain brain, Signature signature, List<File> zips) throws IOException {
+        List<ZipFile> opened = new ArrayList<ZipFile>();
+        try {
+            List<CorpusItem> samples = new ArrayList<CorpusItem>();
+            for (File zip : zips) {
+                ZipFile zipFile = new ZipFile(zip);
+                opened.add(zipFile);
+                samples.addAll(Samples.zipEntries(zipFile));
+            }
+            return signature == null ? brain.learnItems(samples) : brain.relearnItems(signature, samples);
+        } finally {
+            for (ZipFile zipFile : opened) {
+                zipFile.close();
+            }
+        }
+    }
+
+    /**
+     * Discover the formats shared by at least the given number of files, or of the files in the zip files
+     */
+    private static List<Signature> discover(List<File> files, boolean zipSamples, int minClusterSize)
+            throws IOException {
+        Discovery discovery = new Discovery();
+        for (File file : files) {
+            if (zipSamples) {
+                ZipFile zipFile = new ZipFile(file);
+                try {
+                    discovery.addAll(Samples.zipEntries(zipFile));
+                } finally {
+                    zipFile.close();
+                }
+            } else {
+                discovery.add(file);
+            }
+        }
+        //A single shared byte is too weak to be a signature
+        return discovery.signatures(minClusterSize, 2);
     }
 
     private static void printMimeInfoSignature(Signature signature) {
@@ -133,10 +265,8 @@ public class Percipio {
 	}
 
 	private static void printScores(File file, Score score, int numberOfMatches) {
-        int total = 0;
-        for (Score.Pair<Integer, Signature> integerSignaturePair : score.getScoreboard()) {
-            total += integerSignaturePair.getA();
-        }
+        System.out.println(file.getPath() + ":");
+        long total = score.getTotal();
         int prints = 0;
         for (Score.Pair<Integer, Signature> integerSignaturePair : score.getScoreboard()) {
             String message = integerSignaturePair.getB().getInfo().getFileType() + ": " +
@@ -150,9 +280,20 @@ public class Percipio {
     }
 
 
-    private static List<Signature> parseSignatures(Unmarshaller unmarshaller, String signatureArg)
-            throws JAXBException {
+    /**
+     * Load the signatures in a folder, in a compiled pack file, or a single signature file
+     */
+    static List<Signature> parseSignatures(Unmarshaller unmarshaller, String signatureArg)
+            throws JAXBException, IOException {
         File signatureFolder = new File(signatureArg);
+        if (signatureFolder.isFile()) {
+            if (SignaturePack.isPack(signatureFolder)) {
+                return SignaturePack.read(signatureFolder);
+            }
+            List<Signature> signatures = new ArrayList<Signature>();
+            signatures.add((Signature) unmarshaller.unmarshal(signatureFolder));
+            return signatures;
+        }
         List<Signature> signatures = new ArrayList<Signature>();
         if (signatureFolder.isDirectory()){
             File[] signatureFiles = signatureFolder.listFiles(new FilenameFilter() {
@@ -0,0 +1,80 @@
+package dk.statsbiblioteket.percipio;
+
+import org.opf_labs.fmts.corpora.CorpusItem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Sources of samples to learn signatures from, other than plain files. Each sample is a {@link CorpusItem}, so the
+ * items of a {@link org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora} can be learned from directly as well.
+ *
+ * @see Brain#learnItems(Iterable)
+ */
+public final class Samples {
+
+    private Samples() {
+    }
+
+    /**
+     * The files in a zip file, read straight from the zip without extracting them. The zip file must stay open while
+     * the samples are used.
+     *
+     * @param zip the zip file
+     * @return a sample for each entry of the zip that is not a directory
+     */
+    public static List<CorpusItem> zipEntries(final ZipFile zip) {
+        List<CorpusItem> samples = new ArrayList<CorpusItem>(zip.size());
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory()) {
+                continue;
+            }
+            samples.add(new CorpusItem() {
+                public String getName() {
+                    return entry.getName();
+                }
+
+                public long getSize() {
+                    return entry.getSize();
+                }
+
+                public InputStream getStream() throws IOException {
+                    return zip.getInputStream(entry);
+                }
+            });
+        }
+        return samples;
+    }
+
+    /**
+     * A sample that is already open as a stream. The stream can only be read once, and is closed when the sample has
+     * been learned from.
+     *
+     * @param name   the name of the sample
+     * @param in     the content of the sample
+     * @param length the length of the content, or -1 if not known
+     * @return the sample
+     */
+    public static CorpusItem stream(final String name, final InputStream in, final long length) {
+        return new CorpusItem() {
+            public String getName() {
+                return name;
+            }
+
+            public long getSize() {
+                return length;
+            }
+
+            public InputStream getStream() {
+                return in;
+            }
+        };
+    }
+}
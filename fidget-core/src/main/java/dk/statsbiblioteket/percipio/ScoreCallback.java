@@ -0,0 +1,22 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.Score;
+
+import java.io.File;
+
+/**
+ * Receives the scores of files as they are computed, instead of collecting them all in a map first.
+ *
+ * @see Brain#score(java.util.List, java.util.List, int, ScoreCallback)
+ */
+public interface ScoreCallback {
+
+    /**
+     * Called once for each scored file. When scoring in parallel this is called from several threads at once, so
+     * implementations must be thread safe.
+     *
+     * @param file  the file scored
+     * @param score the score of the file
+     */
+    void scored(File file, Score score);
+}
@@ -0,0 +1,182 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.apache.commons.io.filefilter.FileFilterUtils;
+import org.apache.commons.io.monitor.FileAlterationListenerAdaptor;
+import org.apache.commons.io.monitor.FileAlterationObserver;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The signatures in a folder, kept up to date while the folder changes, for long running processes that score files.
+ * The folder is polled for new, changed and deleted .sig and .xml files, and only the files that changed are
+ * unmarshalled again. The signatures are then compiled into a new {@link SignatureMatcher}, which replaces the one in
+ * use in a single write.
+ * <p/>
+ * Scoring never waits for a reload. A thread takes the current matcher with {@link #getMatcher()}, and can keep using
+ * it, and windows from it, while a new matcher is compiled. A new matcher is seen the next time it is taken.
+ * <p/>
+ * A signature file that can not be unmarshalled, or compiled, keeps the signature it had before, if any, until the file
+ * changes again. To replace a signature without it being read half written, write the new file next to it, and rename
+ * it into place.
+ * <p/>
+ * Nothing in Percipio uses the library yet, as sniff scores its files once and exits. It is for processes that embed
+ * Percipio and score files for a long time.
+ */
+public class SignatureLibrary {
+
+    private final int scoreLimit;
+
+    private final Unmarshaller unmarshaller;
+
+    private final FileAlterationObserver observer;
+
+    /** The signature of each file, in file name order. Only changed while holding the lock of this library */
+    private final Map<File, Signature> signatures = new TreeMap<File, Signature>();
+
+    private boolean changed = false;
+
+    private volatile SignatureMatcher matcher;
+
+    private ScheduledExecutorService poller;
+
+    /**
+     * Load the signatures in the folder
+     *
+     * @param folder     the folder of signature files
+     * @param scoreLimit the number of signatures kept in each score
+     * @throws IOException if the folder could not be read
+     * @see SignatureMatcher#SignatureMatcher(java.util.List, int)
+     */
+    public SignatureLibrary(File folder, int scoreLimit) throws IOException {
+        if (!folder.isDirectory()) {
+            throw new IOException(folder + " is not a folder");
+        }
+        this.scoreLimit = scoreLimit;
+        try {
+            unmarshaller = JAXBContext.newInstance(Signature.class).createUnmarshaller();
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Could not create the signature unmarshaller", e);
+        }
+        observer = new FileAlterationObserver(folder, FileFilterUtils.and(
+                FileFilterUtils.fileFileFilter(),
+                FileFilterUtils.or(FileFilterUtils.suffixFileFilter(".sig"), FileFilterUtils.suffixFileFilter(".xml"))));
+        observer.addListener(new FileAlterationListenerAdaptor() {
+            @Override
+            public void onFileCreate(File file) {
+                load(file);
+            }
+
+            @Override
+            public void onFileChange(File file) {
+                load(file);
+            }
+
+            @Override
+            public void onFileDelete(File file) {
+                changed |= signatures.remove(file) != null;
+            }
+        });
+        synchronized (this) {
+            //Every file is new to an observer without a snapshot of the folder
+            observer.checkAndNotify();
+            compile();
+        }
+    }
+
+    /**
+     * @return the signatures in use, compiled for scoring
+     */
+    public SignatureMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * Check the folder for changes now, and replace the matcher if any signature was added, changed or removed
+     *
+     * @return true if the matcher was replaced
+     */
+    public synchronized boolean check() {
+        observer.checkAndNotify();
+        return compile();
+    }
+
+    /**
+     * Check the folder for changes in the background, until stopped
+     *
+     * @param interval the time between the end of a check and the start of the next
+     * @param unit     the unit of the interval
+     * @see #check()
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if (poller != null) {
+            throw new IllegalStateException("The library is already checking for changes");
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SignatureLibrary");
+                //Never keeps the process alive on its own
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        poller.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    check();
+                } catch (Throwable e) {
+                    //A scheduled task that throws is never run again
+                    System.err.println("Could not reload the signatures: " + e);
+                }
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stop checking for changes in the background. The matcher in use is kept
+     */
+    public synchronized void stop() {
+        if (poller != null) {
+            poller.shutdown();
+            poller = null;
+        }
+    }
+
+    private void load(File file) {
+        Signature signature;
+        try {
+            signature = (Signature) unmarshaller.unmarshal(file);
+            //Well formed is not enough, such as a pattern without bytes, so it must compile on its own as well
+            new SignatureMatcher(Collections.singletonList(signature));
+        } catch (JAXBException e) {
+            System.err.println("Could not load the signature '" + file.getAbsolutePath() + "': " + e);
+            return;
+        } catch (RuntimeException e) {
+            System.err.println("Could not compile the signature '" + file.getAbsolutePath() + "': " + e);
+            return;
+        }
+        signatures.put(file, signature);
+        changed = true;
+    }
+
+    private boolean compile() {
+        if (!changed && matcher != null) {
+            return false;
+        }
+        matcher = new SignatureMatcher(new ArrayList<Signature>(signatures.values()), scoreLimit);
+        changed = false;
+        return true;
+    }
+}
@@ -0,0 +1,261 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.BytePattern;
+import dk.statsbiblioteket.percipio.datastructures.Score;
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A set of signatures compiled for scoring many files. All the patterns of all the signatures are flattened into
+ * arrays once, so scoring a file only needs the head and tail of the file in a {@link Window}, instead of a seek and
+ * read per pattern.
+ * <p/>
+ * The patterns of a TrID signature are anchored at fixed offsets in the front or end block, so they are matched
+ * directly against the window at their offset. The scores are the same as reading each pattern from the file, except
+ * that an end pattern reaching before the start of a short file counts as a mismatch, where it used to fail the
+ * whole scoring with an IOException. A pattern with a range matches if it is found at any start from its offset to
+ * its offset plus the range. End block offsets are counted from the block size of the signature before the end of
+ * the file.
+ * <p/>
+ * The window is only as large as the furthest pattern needs, so signatures with only a few short patterns read only
+ * a few bytes of each file.
+ * <p/>
+ * The matcher is immutable, and can be shared between threads, as long as each thread uses its own window. Changes
+ * made to the signatures after compilation are not seen by the matcher.
+ */
+public class SignatureMatcher {
+
+    //Per stage latencies of scoring a file, reported in microseconds
+    private static final Timer READ_TIMER = Metrics.newTimer(SignatureMatcher.class, "read", TimeUnit.MICROSECONDS,
+            TimeUnit.SECONDS);
+
+    private static final Timer SCORE_TIMER = Metrics.newTimer(SignatureMatcher.class, "score", TimeUnit.MICROSECONDS,
+            TimeUnit.SECONDS);
+
+    private final Signature[] signatures;
+
+    private final int[] quality;
+
+    /** Index of the first pattern of each signature. The patterns of signature i are firstPattern[i] to firstPattern[i+1] */
+    private final int[] firstPattern;
+
+    /** Index of the first end pattern of each signature. All patterns before it are front patterns */
+    private final int[] firstEndPattern;
+
+    /** The block size of each signature, that its end pattern offsets are relative to */
+    private final int[] blockSizes;
+
+    private final int[] offsets;
+
+    private final int[] ranges;
+
+    private final byte[][] patterns;
+
+    private final int headSize;
+
+    private final int tailSize;
+
+    /** The number of signatures kept in each score */
+    private final int limit;
+
+    /**
+     * Compile the signatures
+     *
+     * @param signatures the signatures to score files against
+     */
+    public SignatureMatcher(List<Signature> signatures) {
+        this(signatures, Score.UNBOUNDED);
+    }
+
+    /**
+     * Compile the signatures, for scores that only keep the best signatures of each file
+     *
+     * @param signatures the signatures to score files against
+     * @param limit      the number of signatures kept in each score
+     * @see Score#Score(int)
+     */
+    public SignatureMatcher(List<Signature> signatures, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit must be at least 1, not " + limit);
+        }
+        this.limit = limit;
+        int count = signatures.size();
+        this.signatures = signatures.toArray(new Signature[count]);
+        quality = new int[count];
+        firstPattern = new int[count + 1];
+        firstEndPattern = new int[count];
+
+        blockSizes = new int[count];
+
+        List<BytePattern> all = new ArrayList<BytePattern>();
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < count; i++) {
+            Signature signature = this.signatures[i];
+            quality[i] = signature.getGeneral().getNumberOfFiles();
+            blockSizes[i] = signature.getGeneral().getBlockSize();
+            firstPattern[i] = all.size();
+            for (BytePattern bytePattern : signature.getFrontBlock().pattern) {
+                head = Math.max(head, bytePattern.getOffset() + bytePattern.getRange() + bytePattern.getPattern().length);
+                all.add(bytePattern);
+            }
+            firstEndPattern[i] = all.size();
+            for (BytePattern bytePattern : signature.getEndBlock().pattern) {
+                tail = Math.max(tail, Math.max(blockSizes[i] - bytePattern.getOffset(),
+                                               bytePattern.getPattern().length));
+                all.add(bytePattern);
+            }
+        }
+        firstPattern[count] = all.size();
+
+        offsets = new int[all.size()];
+        ranges = new int[all.size()];
+        patterns = new byte[all.size()][];
+        for (int i = 0; i < all.size(); i++) {
+            offsets[i] = all.get(i).getOffset();
+            ranges[i] = all.get(i).getRange();
+            patterns[i] = all.get(i).getPattern();
+        }
+        headSize = head;
+        tailSize = tail;
+    }
+
+    /**
+     * @return the signatures compiled into this matcher, in the order they were given
+     */
+    public List<Signature> getSignatures() {
+        return Collections.unmodifiableList(Arrays.asList(signatures));
+    }
+
+    /**
+     * @return a new window, large enough for all the patterns in this matcher
+     */
+    public Window newWindow() {
+        return new Window(headSize, tailSize);
+    }
+
+    /**
+     * Score the file against all the signatures
+     *
+     * @param file the file to score
+     * @return the score of the file
+     * @throws IOException if the file could not be read
+     */
+    public Score score(File file) throws IOException {
+        return score(file, newWindow());
+    }
+
+    /**
+     * Score the file against all the signatures, reusing the window for reading the file
+     *
+     * @param file   the file to score
+     * @param window a window from {@link #newWindow()}
+     * @return the score of the file
+     * @throws IOException if the file could not be read
+     */
+    public Score score(File file, Window window) throws IOException {
+        TimerContext reading = READ_TIMER.time();
+        try {
+            window.read(file);
+        } finally {
+            reading.stop();
+        }
+        return score(window);
+    }
+
+    /**
+     * Score the content already read into the window against all the signatures
+     *
+     * @param window a window from {@link #newWindow()}, filled with the content to score
+     * @return the score of the content
+     */
+    public Score score(Window window) {
+        TimerContext scoring = SCORE_TIMER.time();
+        try {
+            Score score = new Score(limit);
+            for (int i = 0; i < signatures.length; i++) {
+                score.add(quality[i] * score(i, window), signatures[i]);
+            }
+            return score;
+        } finally {
+            scoring.stop();
+        }
+    }
+
+    private int score(int signature, Window window) {
+        int tempscore = 0;
+        for (int p = firstPattern[signature]; p < firstPattern[signature + 1]; p++) {
+            if (matches(p, signature, window)) {
+                tempscore += patterns[p].length;
+            } else {
+                tempscore -= patterns[p].length;
+            }
+        }
+        return tempscore;
+    }
+
+    /**
+     * Check if the content in the window matches every pattern of a signature
+     *
+     * @param signature the index of the signature, in the order the signatures were given
+     * @param window    a window from {@link #newWindow()}, filled with the content to match
+     * @return true if all the patterns of the signature match
+     */
+    boolean matchesAll(int signature, Window window) {
+        for (int p = firstPattern[signature]; p < firstPattern[signature + 1]; p++) {
+            if (!matches(p, signature, window)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(int p, int signature, Window window) {
+        if (p < firstEndPattern[signature]) {
+            for (int start = offsets[p]; start <= offsets[p] + ranges[p]; start++) {
+                if (matches(patterns[p], window.getHead(), start, 0, window.getHeadLength())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        byte[] tail = window.getTail();
+        int tailStart = tail.length - window.getTailLength();
+        int blockStart = tail.length - blockSizes[signature];
+        for (int start = blockStart + offsets[p]; start <= blockStart + offsets[p] + ranges[p]; start++) {
+            if (start >= tailStart && matches(patterns[p], tail, start, tailStart, tail.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Match the pattern against the buffer. Bytes at or after the end of the valid bytes are read as zero, just as
+     * when reading past the end of a file into a fresh array.
+     */
+    private static boolean matches(byte[] pattern, byte[] buffer, int start, int from, int to) {
+        if (start < from) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; i++) {
+            int position = start + i;
+            byte read = position < to ? buffer[position] : 0;
+            if (read != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
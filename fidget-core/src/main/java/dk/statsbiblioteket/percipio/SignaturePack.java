@@ -0,0 +1,239 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.BytePattern;
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of signatures compiled into a single binary file, that loads far faster than unmarshalling a folder of XML
+ * signatures one by one. The XML signatures stay the source, and the pack is compiled from them again when they
+ * change.
+ * <p/>
+ * The pack is laid out as flat arrays, in the same order as {@link SignatureMatcher} flattens the patterns:
+ * <pre>
+ * int    magic "PSIG", int version
+ * int    signatures, int patterns
+ * int[]  number of files, block size, first pattern (signatures + 1), first end pattern, one per signature
+ * int[]  offset, range, first pattern byte (patterns + 1), one per pattern
+ * byte[] the bytes of all the patterns
+ * the file type and date of each signature, as an int length (-1 for none) and UTF-8 bytes
+ * </pre>
+ * All numbers are big endian. A pack of another version is rejected, so it must be compiled again.
+ */
+public final class SignaturePack {
+
+    /**
+     * The first four bytes of a pack, "PSIG"
+     */
+    public static final int MAGIC = 0x50534947;
+
+    /**
+     * The version of the pack layout written by this class, and the only version read
+     */
+    public static final int VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private SignaturePack() {
+    }
+
+    /**
+     * Compile the signatures into a pack
+     *
+     * @param signatures the signatures
+     * @param pack       the file to write the pack to, replacing it if it exists
+     * @throws IOException if the pack could not be written
+     */
+    public static void write(List<Signature> signatures, File pack) throws IOException {
+        int count = signatures.size();
+        List<BytePattern> all = new ArrayList<BytePattern>();
+        int[] firstPattern = new int[count + 1];
+        int[] firstEndPattern = new int[count];
+        for (int i = 0; i < count; i++) {
+            firstPattern[i] = all.size();
+            all.addAll(signatures.get(i).getFrontBlock().pattern);
+            firstEndPattern[i] = all.size();
+            all.addAll(signatures.get(i).getEndBlock().pattern);
+        }
+        firstPattern[count] = all.size();
+
+        int[] firstByte = new int[all.size() + 1];
+        for (int p = 0; p < all.size(); p++) {
+            firstByte[p + 1] = firstByte[p] + all.get(p).getPattern().length;
+        }
+        byte[][] strings = new byte[count * 2][];
+        int stringBytes = 0;
+        for (int i = 0; i < count; i++) {
+            strings[2 * i] = encode(signatures.get(i).getInfo().getFileType());
+            strings[2 * i + 1] = encode(signatures.get(i).getGeneral().getDate());
+            for (int s = 2 * i; s <= 2 * i + 1; s++) {
+                stringBytes += 4 + (strings[s] == null ? 0 : strings[s].length);
+            }
+        }
+
+        int size = 4 * (4 + 4 * count + 1 + 3 * all.size() + 1) + firstByte[all.size()] + stringBytes;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(all.size());
+        for (Signature signature : signatures) {
+            buffer.putInt(signature.getGeneral().getNumberOfFiles());
+        }
+        for (Signature signature : signatures) {
+            buffer.putInt(signature.getGeneral().getBlockSize());
+        }
+        buffer.asIntBuffer().put(firstPattern);
+        buffer.position(buffer.position() + 4 * firstPattern.length);
+        buffer.asIntBuffer().put(firstEndPattern);
+        buffer.position(buffer.position() + 4 * firstEndPattern.length);
+        for (BytePattern pattern : all) {
+            buffer.putInt(pattern.getOffset());
+        }
+        for (BytePattern pattern : all) {
+            buffer.putInt(pattern.getRange());
+        }
+        buffer.asIntBuffer().put(firstByte);
+        buffer.position(buffer.position() + 4 * firstByte.length);
+        for (BytePattern pattern : all) {
+            buffer.put(pattern.getPattern());
+        }
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(string.length).put(string);
+            }
+        }
+        buffer.flip();
+
+        FileOutputStream out = new FileOutputStream(pack);
+        try {
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Check for the magic number at the start of the file, to tell a pack from an XML signature
+     *
+     * @param file the file to check
+     * @return true if the file starts as a pack does, of any version
+     * @throws IOException if the file could not be read
+     */
+    public static boolean isPack(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            return in.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Load the signatures of a pack. The pack is memory mapped, and only read once into the signatures.
+     *
+     * @param pack the pack file, written by {@link #write(List, File)}
+     * @return the signatures, in the order they were compiled
+     * @throws IOException if the pack could not be read, or is not a pack of this version
+     */
+    public static List<Signature> read(File pack) throws IOException {
+        FileInputStream in = new FileInputStream(pack);
+        try {
+            FileChannel channel = in.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), pack);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static List<Signature> read(ByteBuffer buffer, File pack) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(pack + " is not a signature pack");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(
+                        pack + " is a version " + version + " signature pack, compile it again for version " + VERSION);
+            }
+            int count = buffer.getInt();
+            int patterns = buffer.getInt();
+            int[] numberOfFiles = ints(buffer, count);
+            int[] blockSizes = ints(buffer, count);
+            int[] firstPattern = ints(buffer, count + 1);
+            int[] firstEndPattern = ints(buffer, count);
+            int[] offsets = ints(buffer, patterns);
+            int[] ranges = ints(buffer, patterns);
+            int[] firstByte = ints(buffer, patterns + 1);
+            byte[] bytes = new byte[firstByte[patterns]];
+            buffer.get(bytes);
+
+            List<Signature> signatures = new ArrayList<Signature>(count);
+            for (int i = 0; i < count; i++) {
+                Signature signature = new Signature();
+                signature.getInfo().setFileType(decode(buffer));
+                signature.getGeneral().setDate(decode(buffer));
+                signature.getGeneral().setNumberOfFiles(numberOfFiles[i]);
+                signature.getGeneral().setBlockSize(blockSizes[i]);
+                for (int p = firstPattern[i]; p < firstPattern[i + 1]; p++) {
+                    byte[] pattern = new byte[firstByte[p + 1] - firstByte[p]];
+                    System.arraycopy(bytes, firstByte[p], pattern, 0, pattern.length);
+                    BytePattern bytePattern = new BytePattern(offsets[p], pattern, ranges[p]);
+                    if (p < firstEndPattern[i]) {
+                        signature.getFrontBlock().pattern.add(bytePattern);
+                    } else {
+                        signature.getEndBlock().pattern.add(bytePattern);
+                    }
+                }
+                signatures.add(signature);
+            }
+            return signatures;
+        } catch (BufferUnderflowException e) {
+            IOException ioe = new IOException(pack + " is truncated");
+            ioe.initCause(e);
+            throw ioe;
+        } catch (RuntimeException e) {
+            //Negative sizes, offsets out of bounds or invalid block sizes and ranges
+            IOException ioe = new IOException(pack + " is corrupt");
+            ioe.initCause(e);
+            throw ioe;
+        }
+    }
+
+    private static int[] ints(ByteBuffer buffer, int length) {
+        int[] ints = new int[length];
+        buffer.asIntBuffer().get(ints);
+        buffer.position(buffer.position() + 4 * length);
+        return ints;
+    }
+
+    private static byte[] encode(String string) {
+        return string == null ? null : string.getBytes(UTF8);
+    }
+
+    private static String decode(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] string = new byte[length];
+        buffer.get(string);
+        return new String(string, UTF8);
+    }
+}
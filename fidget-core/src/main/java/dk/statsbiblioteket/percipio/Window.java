@@ -0,0 +1,216 @@
+package dk.statsbiblioteket.percipio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Reusable buffers holding the head and the tail of a single file. A window is filled with one open of the file and
+ * at most two reads, and can then be examined as often as needed. Windows are not thread safe, but are meant to be
+ * reused for file after file by the same thread, so no garbage is created per file.
+ * <p/>
+ * The head buffer holds the bytes from offset 0 and onwards. The tail buffer is aligned to the end of the file, so
+ * that the last byte of the file is always the last byte of the tail buffer. Use {@link #getHeadLength()} and
+ * {@link #getTailLength()} to know how many of the bytes are actually from the file.
+ * <p/>
+ * A window can also be filled from a stream, such as an entry of a zip file, without extracting it. The head is read
+ * first, and the rest of the stream is read through the tail buffer as a ring, so only the last bytes are kept.
+ */
+public class Window {
+
+    private final byte[] head;
+
+    private final byte[] tail;
+
+    private int headLength;
+
+    private int tailLength;
+
+    private long length;
+
+    /**
+     * Create a new window
+     *
+     * @param headSize the number of bytes to read from the start of the file
+     * @param tailSize the number of bytes to read from the end of the file
+     */
+    public Window(int headSize, int tailSize) {
+        if (headSize < 0 || tailSize < 0) {
+            throw new IllegalArgumentException("Window sizes must not be negative");
+        }
+        head = new byte[headSize];
+        tail = new byte[tailSize];
+    }
+
+    /**
+     * Read the head and tail of the file into this window, replacing whatever was read before.
+     *
+     * @param file the file to read
+     * @throws IOException if the file could not be read
+     */
+    public void read(File file) throws IOException {
+        RandomAccessFile reader = new RandomAccessFile(file, "r");
+        try {
+            length = reader.length();
+            headLength = readFully(reader, head, (int) Math.min(head.length, length));
+            tailLength = (int) Math.min(tail.length, length);
+            if (length <= headLength) {
+                //The whole file is in the head, so there is no need to read it again
+                System.arraycopy(head, headLength - tailLength, tail, tail.length - tailLength, tailLength);
+            } else {
+                reader.seek(length - tailLength);
+                tailLength = readFully(reader, tail, tail.length - tailLength, tailLength);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read the head and tail of the stream into this window, replacing whatever was read before. The stream is read
+     * to the end, but not closed.
+     *
+     * @param in       the stream to read
+     * @param expected the length of the stream if known, or -1. If known, the bytes between the head and the tail
+     *                 are skipped rather than read, where the stream supports it
+     * @throws IOException if the stream could not be read
+     */
+    public void read(InputStream in, long expected) throws IOException {
+        headLength = readFully(in, head, 0, head.length);
+        length = headLength;
+        if (headLength < head.length) {
+            //The whole stream is in the head
+            tailLength = (int) Math.min(tail.length, length);
+            System.arraycopy(head, headLength - tailLength, tail, tail.length - tailLength, tailLength);
+            return;
+        }
+        if (expected > head.length + (long) tail.length) {
+            length += skipFully(in, expected - head.length - tail.length);
+        }
+        if (tail.length == 0) {
+            length += skipFully(in, Long.MAX_VALUE);
+            tailLength = 0;
+            return;
+        }
+
+        //The tail may overlap the head, when nothing was skipped
+        int position = 0;
+        long ringed = 0;
+        if (length == headLength) {
+            int overlap = Math.min(tail.length, headLength);
+            System.arraycopy(head, headLength - overlap, tail, 0, overlap);
+            position = overlap % tail.length;
+            ringed = overlap;
+        }
+        int count;
+        while ((count = in.read(tail, position, tail.length - position)) >= 0) {
+            position = (position + count) % tail.length;
+            ringed += count;
+            length += count;
+        }
+        tailLength = (int) Math.min(tail.length, ringed);
+        //Rotate the ring, so the last byte read is the last byte of the tail
+        rotate(tail, tail.length - position);
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = in.read(buffer, offset + read, length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+
+    private static long skipFully(InputStream in, long length) throws IOException {
+        long skipped = 0;
+        while (skipped < length) {
+            long count = in.skip(length - skipped);
+            if (count <= 0) {
+                //Some streams only skip what is buffered, so check for the end of the stream
+                if (in.read() < 0) {
+                    break;
+                }
+                count = 1;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    /**
+     * Rotate the buffer to the right in place
+     */
+    private static void rotate(byte[] buffer, int distance) {
+        distance %= buffer.length;
+        if (distance == 0) {
+            return;
+        }
+        reverse(buffer, 0, buffer.length);
+        reverse(buffer, 0, distance);
+        reverse(buffer, distance, buffer.length);
+    }
+
+    private static void reverse(byte[] buffer, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            byte swap = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = swap;
+        }
+    }
+
+    private static int readFully(RandomAccessFile reader, byte[] buffer, int length) throws IOException {
+        return readFully(reader, buffer, 0, length);
+    }
+
+    private static int readFully(RandomAccessFile reader, byte[] buffer, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = reader.read(buffer, offset + read, length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+
+    /**
+     * @return the head buffer. Only the first {@link #getHeadLength()} bytes are from the file.
+     */
+    public byte[] getHead() {
+        return head;
+    }
+
+    /**
+     * @return the tail buffer. Only the last {@link #getTailLength()} bytes are from the file.
+     */
+    public byte[] getTail() {
+        return tail;
+    }
+
+    /**
+     * @return the number of valid bytes in the head buffer
+     */
+    public int getHeadLength() {
+        return headLength;
+    }
+
+    /**
+     * @return the number of valid bytes at the end of the tail buffer
+     */
+    public int getTailLength() {
+        return tailLength;
+    }
+
+    /**
+     * @return the length of the file last read into this window
+     */
+    public long getLength() {
+        return length;
+    }
+}
@@ -13,7 +13,7 @@ import java.nio.charset.Charset;
  * To change this template use File | Settings | File Templates.
  */
 @XmlAccessorType(XmlAccessType.NONE)
-@XmlType(propOrder = {"bytes","offset","ascii"})
+@XmlType(propOrder = {"bytes","offset","range","ascii"})
 public class BytePattern {
 
 
@@ -22,6 +22,10 @@ public class BytePattern {
 
     private int offset;
 
+    //Left out for patterns at a fixed offset, so they keep the TrID form
+    @XmlElement(name = "Range")
+    private Integer range;
+
 
 
     public BytePattern(int offset, byte[] pattern) {
@@ -29,6 +33,11 @@ public class BytePattern {
         this.pattern = pattern;
     }
 
+    public BytePattern(int offset, byte[] pattern, int range) {
+        this(offset, pattern);
+        setRange(range);
+    }
+
     public BytePattern() {
     }
     
@@ -41,6 +50,21 @@ public class BytePattern {
         this.offset = offset;
     }
 
+    /**
+     * @return the number of bytes after the offset that the pattern may also start at. Zero for patterns at a fixed
+     *         offset
+     */
+    public int getRange() {
+        return range == null ? 0 : range;
+    }
+
+    public void setRange(int range) {
+        if (range < 0) {
+            throw new IllegalArgumentException("The range must not be negative, not " + range);
+        }
+        this.range = range == 0 ? null : range;
+    }
+
 
     @XmlElement(name = "Bytes")
     public String getBytes(){
@@ -14,12 +14,21 @@ import javax.xml.bind.annotation.XmlElement;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class General {
 
+    /**
+     * The size of the front and end blocks, unless another size is given
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+
     @XmlElement(name = "FileNum")
     private int numberOfFiles;
 
     @XmlElement(name = "Date")
     private String date;
 
+    //Left out for the default size, so such signatures keep the TrID form
+    @XmlElement(name = "BlockSize")
+    private Integer blockSize;
+
     public General() {
     }
 
@@ -44,4 +53,19 @@ public class General {
         this.date = date;
     }
 
+    /**
+     * @return the size of the front and end blocks. End block offsets are counted from this many bytes before the
+     *         end of the file
+     */
+    public int getBlockSize() {
+        return blockSize == null ? DEFAULT_BLOCK_SIZE : blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("The block size must be at least 1, not " + blockSize);
+        }
+        this.blockSize = blockSize == DEFAULT_BLOCK_SIZE ? null : blockSize;
+    }
+
 }
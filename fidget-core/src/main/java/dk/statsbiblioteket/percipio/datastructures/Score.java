@@ -12,14 +12,47 @@ import java.util.*;
 public class Score {
 /* The purpose of this class is to hold a list score/signature pairs, in sorted order*/
 
-    private SortedSet<Pair<Integer,Signature>> scores;
+    /**
+     * The limit of a score that keeps every signature
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /*
+     * The best signatures so far, in a min-heap of primitive arrays with the worst of them at the root. Of equal
+     * scores, the signature added last is the worst, so ties keep the signatures in the order they were added.
+     */
+    private final int limit;
+    private int[] scores;
+    private int[] orders;
+    private Signature[] signatures;
+    private int size = 0;
+    private int added = 0;
+    private long total = 0;
+
+    /**
+     * Create a score keeping every signature added
+     */
     public Score() {
-        scores = new TreeSet(new Comparator<Pair<Integer,Signature>>(){
+        this(UNBOUNDED);
+    }
 
-            public int compare(Pair o1, Pair o2) {
-                return -o1.a.compareTo(o2.a);
-            }
-        });
+    /**
+     * Create a score keeping only the best signatures added. Memory use is bounded by the limit, not the number of
+     * signatures added.
+     *
+     * @param limit the number of signatures to keep
+     */
+    public Score(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The limit must be at least 1, not " + limit);
+        }
+        this.limit = limit;
+        int capacity = Math.min(limit, INITIAL_CAPACITY);
+        scores = new int[capacity];
+        orders = new int[capacity];
+        signatures = new Signature[capacity];
     }
 
     public class Pair<A extends Comparable,B>{
@@ -27,9 +60,12 @@ public class Score {
         public A a;
         public B b;
 
-        private Pair(A a, B b) {
+        private final int order;
+
+        private Pair(A a, B b, int order) {
             this.a = a;
             this.b = b;
+            this.order = order;
         }
 
         public A getA() {
@@ -41,11 +77,98 @@ public class Score {
         }
     }
 
+    /**
+     * @return the signatures kept, the best first. Of equal scores, the signature added first comes first
+     */
     public SortedSet<Pair<Integer,Signature>> getScoreboard(){
-        return Collections.unmodifiableSortedSet(scores);
+        SortedSet<Pair<Integer,Signature>> scoreboard = new TreeSet<Pair<Integer,Signature>>(
+                new Comparator<Pair<Integer,Signature>>(){
+
+            public int compare(Pair<Integer,Signature> o1, Pair<Integer,Signature> o2) {
+                int compared = -o1.a.compareTo(o2.a);
+                return compared != 0 ? compared : (o1.order < o2.order ? -1 : (o1.order == o2.order ? 0 : 1));
+            }
+        });
+        for (int i = 0; i < size; i++) {
+            scoreboard.add(new Pair<Integer,Signature>(scores[i], signatures[i], orders[i]));
+        }
+        return Collections.unmodifiableSortedSet(scoreboard);
+    }
+
+    /**
+     * @return the sum of the scores of all the signatures added, including those not kept
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public void add(int score, Signature signature){
+        int order = added++;
+        total += score;
+        if (size < limit) {
+            if (size == scores.length) {
+                int capacity = (int) Math.min(limit, size * 2L);
+                scores = Arrays.copyOf(scores, capacity);
+                orders = Arrays.copyOf(orders, capacity);
+                signatures = Arrays.copyOf(signatures, capacity);
+            }
+            set(size, score, order, signature);
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            //Better than the worst kept. Later signatures never win ties, so equal scores are dropped
+            set(0, score, order, signature);
+            siftDown(0);
+        }
+    }
+
+    private void set(int i, int score, int order, Signature signature) {
+        scores[i] = score;
+        orders[i] = order;
+        signatures[i] = signature;
+    }
+
+    /**
+     * @return true if the entry at i is worse than the entry at j
+     */
+    private boolean worse(int i, int j) {
+        return scores[i] < scores[j] || (scores[i] == scores[j] && orders[i] > orders[j]);
+    }
+
+    private void swap(int i, int j) {
+        int score = scores[i];
+        int order = orders[i];
+        Signature signature = signatures[i];
+        set(i, scores[j], orders[j], signatures[j]);
+        set(j, score, order, signature);
     }
 
-    public void add(Integer score, Signature signature){
-        scores.add(new Pair<Integer,Signature>(score,signature));
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, parent)) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && worse(left, worst)) {
+                worst = left;
+            }
+            if (right < size && worse(right, worst)) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
     }
 }
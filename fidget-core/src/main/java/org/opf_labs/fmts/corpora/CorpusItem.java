@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * 
+ */
+package org.opf_labs.fmts.corpora;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A single item of a corpus, as returned when traversing the corpus.
+ * 
+ * @version 0.1
+ * 
+ */
+public interface CorpusItem {
+	/**
+	 * @return the name of the item including extension, the same name the
+	 *         corpus gives the item when it is looked up directly
+	 */
+	public String getName();
+
+	/**
+	 * @return the size of the item in bytes, or -1 if not known
+	 */
+	public long getSize();
+
+	/**
+	 * Opens a new stream to the item's data, the caller must close it.
+	 * 
+	 * @return the InputStream to the item data
+	 * @throws IOException
+	 *             if the item can't be opened
+	 */
+	public InputStream getStream() throws IOException;
+}
@@ -0,0 +1,30 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.corpora;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iteration over the items of a corpus that may hold folders open. An
+ * iteration that runs to the end closes itself, one that stops early must be
+ * closed by the caller. Once closed, the items already returned can't be read.
+ * 
+ * @version 0.1
+ * 
+ */
+public interface CorpusIterator extends Iterator<CorpusItem>, Closeable {
+}
@@ -20,14 +20,28 @@ package org.opf_labs.fmts.corpora.govdocs;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
+import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.opf_labs.fmts.corpora.Corpora;
 import org.opf_labs.fmts.corpora.CorpusDetails;
+import org.opf_labs.fmts.corpora.CorpusItem;
+import org.opf_labs.fmts.corpora.CorpusIterator;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
 
 /**
  * Abstract base class for GovDocsCorpora Corpora implementations.
@@ -49,6 +63,37 @@ abstract class AbstractGovDocs implements GovDocsCorpora {
 	protected static final Pattern FILE_PATTERN = Pattern.compile(FILE_REGEX);
 	protected static final int MAX_FOLDER_NUM = 999;
 	protected static final int MAX_FILE_NUM = 999999;
+	/** The number of items in a full folder */
+	protected static final int FOLDER_SIZE = MAX_FOLDER_NUM + 1;
+	// Latency of opening an item's stream, reported in microseconds
+	private static final Timer ITEM_TIMER = Metrics.newTimer(GovDocsCorpora.class, "item",
+			TimeUnit.MICROSECONDS, TimeUnit.SECONDS);
+	private static final Function<CorpusItem, CorpusItem> TIMED_ITEM = new Function<CorpusItem, CorpusItem>() {
+		@Override
+		public CorpusItem apply(final CorpusItem item) {
+			return new CorpusItem() {
+				@Override
+				public String getName() {
+					return item.getName();
+				}
+
+				@Override
+				public long getSize() {
+					return item.getSize();
+				}
+
+				@Override
+				public InputStream getStream() throws IOException {
+					TimerContext fetching = ITEM_TIMER.time();
+					try {
+						return item.getStream();
+					} finally {
+						fetching.stop();
+					}
+				}
+			};
+		}
+	};
 	protected final File root;
 	protected final CorpusDetails details;
 	private final int folderCount;
@@ -124,7 +169,12 @@ abstract class AbstractGovDocs implements GovDocsCorpora {
 				((itemNum >= 0) && (itemNum <= MAX_FILE_NUM)),
 				"Invalid item number should be (0 <= itemNumber <= "
 						+ MAX_FILE_NUM + ") NOT: " + itemNum);
-		return getItemImpl(itemNum);
+		TimerContext fetching = ITEM_TIMER.time();
+		try {
+			return getItemImpl(itemNum);
+		} finally {
+			fetching.stop();
+		}
 	}
 	
 	abstract protected InputStream getItemImpl(final int itemNum) throws FileNotFoundException;
@@ -143,7 +193,12 @@ abstract class AbstractGovDocs implements GovDocsCorpora {
 				((itemNum >= 0) && (itemNum <= MAX_FOLDER_NUM)),
 				"Invalid file number should be (0 <= itemNumber <= "
 						+ MAX_FOLDER_NUM + ") NOT: " + itemNum);
-		return getItemImpl(folderNum, itemNum);
+		TimerContext fetching = ITEM_TIMER.time();
+		try {
+			return getItemImpl(folderNum, itemNum);
+		} finally {
+			fetching.stop();
+		}
 	}
 
 	abstract protected InputStream getItemImpl(final int folderNum, final int itemNum) throws FileNotFoundException;
@@ -180,6 +235,107 @@ abstract class AbstractGovDocs implements GovDocsCorpora {
 
 	abstract protected String getItemNameImpl(final int folderNum, final int itemNum) throws FileNotFoundException;
 
+	/**
+	 * @see org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora#items()
+	 */
+	@Override
+	public final Iterable<CorpusItem> items() {
+		return items(0, MAX_FOLDER_NUM);
+	}
+
+	/**
+	 * @see org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora#items(int, int)
+	 */
+	@Override
+	public final Iterable<CorpusItem> items(final int firstFolder, final int lastFolder) {
+		checkFolderRange(firstFolder, lastFolder);
+		return new Iterable<CorpusItem>() {
+			@Override
+			public Iterator<CorpusItem> iterator() {
+				return openItems(firstFolder, lastFolder);
+			}
+		};
+	}
+
+	/**
+	 * @see org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora#openItems(int, int)
+	 */
+	@Override
+	public final CorpusIterator openItems(final int firstFolder, final int lastFolder) {
+		checkFolderRange(firstFolder, lastFolder);
+		return new TimedIterator(itemIterator(firstFolder, lastFolder));
+	}
+
+	private static void checkFolderRange(final int firstFolder, final int lastFolder) {
+		Preconditions.checkArgument(
+				((firstFolder >= 0) && (firstFolder <= lastFolder) && (lastFolder <= MAX_FOLDER_NUM)),
+				"Invalid folder range should be (0 <= firstFolder <= lastFolder <= "
+						+ MAX_FOLDER_NUM + ") NOT: " + firstFolder + " - " + lastFolder);
+	}
+
+	/**
+	 * @param firstFolder
+	 *            the number of the first folder to traverse
+	 * @param lastFolder
+	 *            the number of the last folder to traverse, inclusive
+	 * @return a new iterator over the items of the folders, independent of any
+	 *         other iterator and of the getItem methods
+	 */
+	abstract protected CorpusIterator itemIterator(final int firstFolder, final int lastFolder);
+
+	/**
+	 * @param firstFolder
+	 *            the number of the first folder
+	 * @param lastFolder
+	 *            the number of the last folder, inclusive
+	 * @param pattern
+	 *            the name pattern of the folders
+	 * @return the existing folders in the range, in folder number order
+	 */
+	protected final File[] foldersInRange(final int firstFolder, final int lastFolder, final Pattern pattern) {
+		File[] all = this.root.listFiles((FilenameFilter) new RegexFileFilter(pattern));
+		List<File> folders = new ArrayList<File>();
+		if (all != null) {
+			for (File folder : all) {
+				int folderNum = Integer.parseInt(folder.getName().substring(0, 3));
+				if ((folderNum >= firstFolder) && (folderNum <= lastFolder)) folders.add(folder);
+			}
+		}
+		Collections.sort(folders);
+		return folders.toArray(new File[folders.size()]);
+	}
+
+	/**
+	 * Times the opening of each item's stream.
+	 */
+	private static final class TimedIterator implements CorpusIterator {
+		private final CorpusIterator items;
+
+		TimedIterator(final CorpusIterator items) {
+			this.items = items;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.items.hasNext();
+		}
+
+		@Override
+		public CorpusItem next() {
+			return TIMED_ITEM.apply(this.items.next());
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Corpus items can't be removed");
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.items.close();
+		}
+	}
+
 	/**
 	 * @see java.lang.Object#hashCode()
 	 */
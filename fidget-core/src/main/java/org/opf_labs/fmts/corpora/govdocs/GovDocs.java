@@ -21,10 +21,17 @@ package org.opf_labs.fmts.corpora.govdocs;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -37,13 +44,16 @@ import org.opf_labs.fmts.corpora.Corpora;
 import org.opf_labs.fmts.corpora.CorpusDetails;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
  * Factory for GovDocsCorpora. Does the grunt work of:
  * 
  * <ul>
  * <li>Deciding whether a zip or directory instance has been passed</li>
- * <li>Counting the files, and assessing the size of the corpus</li>
+ * <li>Counting the files, and assessing the size of the corpus, folders are
+ * scanned in parallel, and the results can be cached in a manifest</li>
  * <li>Working out the gaps in the corpus (missing numbers (0 <= numb <=
  * 999,999)</li>
  * </ul>
@@ -62,38 +72,96 @@ public class GovDocs {
 
 	/**
 	 * Get a new GovDocsCorpora instance from a root directory, can be in either zip
-	 * (1000 zip files) or directory (1,000 directories) based.
+	 * (1000 zip files) or directory (1,000 directories) based. Every folder
+	 * is scanned, and nothing is written.
 	 * 
 	 * @param root
 	 * @return the new GovDocsCorpora instance
+	 * @see #newInstance(File, File)
 	 */
 	public static final GovDocsCorpora newInstance(final File root) {
+		return newInstance(root, null);
+	}
+
+	/**
+	 * Get a new GovDocsCorpora instance from a root directory, can be in either zip
+	 * (1000 zip files) or directory (1,000 directories) based.
+	 * 
+	 * The folders are scanned in parallel. If a manifest file is given, the
+	 * details of folders that haven't changed (same last modified time and
+	 * length) since the manifest was written are read from it, and only the
+	 * other folders are scanned. The manifest is then updated. Keep the
+	 * manifest out of the corpus, the corpus itself is only read.
+	 * 
+	 * The cache can go stale for directory based corpora: overwriting a file
+	 * in place doesn't change its folder's last modified time or length, so
+	 * the old size of the file is still reported. Adding, removing or
+	 * renaming a file does change them. Delete the manifest after changing
+	 * files in place. A zip is rewritten whenever an entry changes, so zip
+	 * based corpora don't have this problem.
+	 * 
+	 * @param root
+	 * @param manifestFile
+	 *            the manifest file caching the folder details, or null to
+	 *            scan every folder
+	 * @return the new GovDocsCorpora instance
+	 */
+	public static final GovDocsCorpora newInstance(final File root, final File manifestFile) {
 		Preconditions.checkNotNull(root, "root==null");
 		Preconditions.checkArgument(root.isDirectory(), "root should be an existing directory.");
-		boolean isZip = isZip(root);
+		final boolean isZip = isZip(root);
 		Pattern foldPattern = (isZip) ? GovDocsZipped.ZIP_PATTERN : AbstractGovDocs.DIR_PATTERN;
 		FilenameFilter filter = new RegexFileFilter(foldPattern);
 		final File[] folders = root.listFiles(filter);
+		final GovDocsManifest manifest = (manifestFile == null) ? null : GovDocsManifest.read(manifestFile);
+		final int threads = Math.max(1, Math.min(folders.length, Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<FolderDetails>> scans = new ArrayList<Future<FolderDetails>>(folders.length);
+		for (final File folder : folders) {
+			FolderDetails cached = (manifest == null) ? null : manifest.get(folder);
+			if (cached != null) {
+				scans.add(Futures.immediateFuture(cached));
+				continue;
+			}
+			scans.add(executor.submit(new Callable<FolderDetails>() {
+				@Override
+				public FolderDetails call() throws IOException {
+					FolderDetails foldDets = (isZip) ? getZipFolderDetails(folder) : getFolderDetails(folder);
+					if (manifest != null) manifest.put(folder, foldDets);
+					return foldDets;
+				}
+			}));
+		}
+		executor.shutdown();
 		int count = 0;
 		long size = 0L;
 		final Set<String> exts = new HashSet<String>();
-		for (File folder : folders) {
+		for (int i = 0; i < folders.length; i++) {
+			File folder = folders[i];
 			FolderDetails foldDets;
 			try {
-				foldDets = (isZip) ? getZipFolderDetails(folder) : getFolderDetails(folder);
-			} catch (ZipException excep) {
-				System.err.println("Folder: " + folder.getAbsolutePath() + " does not appear to be a valid zip file.");
-				excep.printStackTrace();
-				continue;
-			} catch (IOException excep) {
-				System.err.println("IOException reading Folder: " + folder.getAbsolutePath());
-				excep.printStackTrace();
+				foldDets = Uninterruptibles.getUninterruptibly(scans.get(i));
+			} catch (ExecutionException excep) {
+				if (excep.getCause() instanceof ZipException) {
+					System.err.println("Folder: " + folder.getAbsolutePath() + " does not appear to be a valid zip file.");
+				} else {
+					System.err.println("IOException reading Folder: " + folder.getAbsolutePath());
+				}
+				excep.getCause().printStackTrace();
 				continue;
 			}
 			count+=foldDets.count;
 			size+=foldDets.size;
 			exts.addAll(foldDets.exts);
 		}
+		if (manifest != null) {
+			manifest.retain(folders);
+			try {
+				manifest.write(manifestFile);
+			} catch (IOException excep) {
+				System.err.println("Could not write manifest: " + manifestFile.getAbsolutePath() + ", " + excep.getMessage());
+			}
+		}
 		CorpusDetails details = Corpora.details(count, size).name(GovDocsCorpora.NAME).type(GovDocsCorpora.TYPE).extensions(exts).build();
 		return (isZip) ? GovDocsZipped.newInstance(root, details, folders.length) : GovDocsDirectories.newInstance(root, details, folders.length);
 	}
@@ -141,7 +209,7 @@ public class GovDocs {
 	}
 
 
-	private static class FolderDetails {
+	static class FolderDetails {
 		final int count;
 		final long size;
 		final Set<String> exts;
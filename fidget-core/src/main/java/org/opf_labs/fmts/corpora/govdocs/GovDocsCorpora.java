@@ -22,6 +22,8 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 
 import org.opf_labs.fmts.corpora.CorpusDetails;
+import org.opf_labs.fmts.corpora.CorpusItem;
+import org.opf_labs.fmts.corpora.CorpusIterator;
 
 /**
  * Describes the GovDocsCorpora corpus slice and dice interface.
@@ -103,4 +105,50 @@ public interface GovDocsCorpora extends CorpusDetails{
 	 * @throws FileNotFoundException if the item could not be found
 	 */
 	public String getItemName(int folderNum, int fileNum) throws FileNotFoundException;
+
+	/**
+	 * Lazily traverses every item in the corpus, in item number order. Only
+	 * items that exist are visited, each folder is opened once as the
+	 * traversal reaches it. An item's stream should be read before the
+	 * traversal moves on to the next folder, and separate traversals are
+	 * independent so they can run on separate threads. Each item is named as
+	 * by {@link #getItemName(int)}.
+	 * 
+	 * A traversal that runs to the end releases the folder it holds open, use
+	 * {@link #openItems(int, int)} for one that may stop early.
+	 * 
+	 * @return the items of the corpus
+	 * @see #items(int, int)
+	 */
+	public Iterable<CorpusItem> items();
+
+	/**
+	 * Lazily traverses the items in a range of folders, in item number
+	 * order. Splitting the corpus into folder ranges allows the ranges to be
+	 * traversed in parallel, one thread per range.
+	 * 
+	 * @param firstFolder
+	 *            the number of the first folder to traverse (0 <= firstFolder
+	 *            <= 999)
+	 * @param lastFolder
+	 *            the number of the last folder to traverse, inclusive
+	 *            (firstFolder <= lastFolder <= 999)
+	 * @return the items of the folders
+	 */
+	public Iterable<CorpusItem> items(int firstFolder, int lastFolder);
+
+	/**
+	 * Opens a traversal of the items in a range of folders, as
+	 * {@link #items(int, int)}, that the caller closes if it stops before the
+	 * end.
+	 * 
+	 * @param firstFolder
+	 *            the number of the first folder to traverse (0 <= firstFolder
+	 *            <= 999)
+	 * @param lastFolder
+	 *            the number of the last folder to traverse, inclusive
+	 *            (firstFolder <= lastFolder <= 999)
+	 * @return the items of the folders
+	 */
+	public CorpusIterator openItems(int firstFolder, int lastFolder);
 }
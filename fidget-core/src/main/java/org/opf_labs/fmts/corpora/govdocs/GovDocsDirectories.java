@@ -23,9 +23,16 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.commons.io.filefilter.RegexFileFilter;
 import org.opf_labs.fmts.corpora.CorpusDetails;
+import org.opf_labs.fmts.corpora.CorpusItem;
+import org.opf_labs.fmts.corpora.CorpusIterator;
+
+import com.google.common.collect.AbstractIterator;
 
 /**
  * Quick utility knocked up in a hurry to run the TikaSigTester over the
@@ -39,6 +46,18 @@ import org.opf_labs.fmts.corpora.CorpusDetails;
  *          Created 2 Nov 2012:13:35:11
  */
 public class GovDocsDirectories extends AbstractGovDocs {
+	// The number of folder indexes kept in memory
+	private static final int CACHED_FOLDERS = 16;
+	private static final FilenameFilter FILE_FILTER = new RegexFileFilter(FILE_PATTERN);
+	@SuppressWarnings("serial")
+	private final Map<Integer, File[]> folderIndexes = new LinkedHashMap<Integer, File[]>(
+			CACHED_FOLDERS, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, File[]> eldest) {
+			return size() > CACHED_FOLDERS;
+		}
+	};
+
 	private GovDocsDirectories(final File root) {
 		super(root);
 	}
@@ -84,17 +103,117 @@ public class GovDocsDirectories extends AbstractGovDocs {
 	}
 
 	private File getItemFile(int number) throws FileNotFoundException {
-		FilenameFilter itemFilter = new RegexFileFilter("^\\"
-				+ baseName(number) + FILE_REGEX_SUFFIX);
-		int folderNum = folderNumber(number);
-		File folder = new File(this.root.getAbsolutePath() + File.separator
-				+ folderName(folderNum));
-		File[] files = folder.listFiles(itemFilter);
-		if (files.length < 1)
+		File file = folderIndex(folderNumber(number))[number % FOLDER_SIZE];
+		if (file == null)
 			throw new FileNotFoundException("Could not file file for number: "
 					+ number);
-		if (files.length > 1)
-			System.err.println("Duplicated entries for number: " + number);
-		return files[0];
+		return file;
+	}
+
+	/**
+	 * Lists the folder once and indexes its files by item number within the
+	 * folder. The most recently used folder indexes are kept, so looking up
+	 * every item in the corpus lists each folder once, rather than once per
+	 * item.
+	 * 
+	 * @param folderNum
+	 *            the number of the folder
+	 * @return the folder's files indexed by item number within the folder,
+	 *         all null if the folder is missing
+	 */
+	private synchronized File[] folderIndex(final int folderNum) {
+		Integer key = Integer.valueOf(folderNum);
+		File[] index = this.folderIndexes.get(key);
+		if (index != null) return index;
+		index = new File[FOLDER_SIZE];
+		indexFiles(new File(this.root.getAbsolutePath() + File.separator
+				+ folderName(folderNum)), folderNum, index);
+		this.folderIndexes.put(key, index);
+		return index;
+	}
+
+	/**
+	 * Indexes the folder's files by item number within the folder, keeping
+	 * the first of any duplicates, and skipping items that belong in another
+	 * folder.
+	 */
+	private void indexFiles(final File folder, final int folderNum, final File[] index) {
+		File[] files = folder.listFiles(FILE_FILTER);
+		if (files == null) return;
+		for (File file : files) {
+			int number = Integer.parseInt(file.getName().substring(0, 6));
+			if (folderNumber(number) != folderNum) continue;
+			if (index[number % FOLDER_SIZE] != null) {
+				System.err.println("Duplicated entries for number: " + number);
+				continue;
+			}
+			index[number % FOLDER_SIZE] = file;
+		}
+	}
+
+	/**
+	 * Each iterator lists the folders itself, one at a time, without touching
+	 * the cached folder indexes. Nothing is held open, so closing the iterator
+	 * just ends it.
+	 * 
+	 * @see org.opf_labs.fmts.corpora.govdocs.AbstractGovDocs#itemIterator(int, int)
+	 */
+	@Override
+	protected CorpusIterator itemIterator(final int firstFolder, final int lastFolder) {
+		return new FileIterator(foldersInRange(firstFolder, lastFolder, DIR_PATTERN));
+	}
+
+	private final class FileIterator extends AbstractIterator<CorpusItem> implements CorpusIterator {
+		private final File[] folders;
+		private final File[] index = new File[FOLDER_SIZE];
+		private int folder = -1;
+		private int item = FOLDER_SIZE;
+
+		FileIterator(final File[] folders) {
+			this.folders = folders;
+		}
+
+		@Override
+		protected CorpusItem computeNext() {
+			while (true) {
+				while (this.item < FOLDER_SIZE) {
+					File file = this.index[this.item++];
+					if (file != null) return new FileItem(file);
+				}
+				if (++this.folder >= this.folders.length) return endOfData();
+				Arrays.fill(this.index, null);
+				this.item = 0;
+				indexFiles(this.folders[this.folder], Integer.parseInt(this.folders[this.folder].getName()), this.index);
+			}
+		}
+
+		@Override
+		public void close() {
+			this.folder = this.folders.length;
+			this.item = FOLDER_SIZE;
+		}
+	}
+
+	private static final class FileItem implements CorpusItem {
+		private final File file;
+
+		FileItem(final File file) {
+			this.file = file;
+		}
+
+		@Override
+		public String getName() {
+			return this.file.getName();
+		}
+
+		@Override
+		public long getSize() {
+			return this.file.length();
+		}
+
+		@Override
+		public InputStream getStream() throws FileNotFoundException {
+			return new FileInputStream(this.file);
+		}
 	}
 }
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * 
+ */
+package org.opf_labs.fmts.corpora.govdocs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.opf_labs.fmts.corpora.govdocs.GovDocs.FolderDetails;
+
+/**
+ * Cache of the details of each folder of a GovDocs corpus, stored as a tab
+ * separated text file. Each folder's details are keyed by the folder's last
+ * modified time and length, so a folder (or zip) that has changed since the
+ * manifest was written is rescanned, and the rest are reused. Files changed
+ * in place inside a directory folder are not noticed, see
+ * {@link GovDocs#newInstance(java.io.File, java.io.File)}.
+ * 
+ * The file has a version line, followed by a line per folder:
+ * 
+ * <pre>
+ * name	lastModified	length	count	size	ext1	ext2...
+ * </pre>
+ * 
+ * @version 0.1
+ * 
+ */
+final class GovDocsManifest {
+	private static final String VERSION = "govdocs-manifest 1";
+	private static final String ENCODING = "UTF-8";
+	private static final char TAB = '\t';
+	private static final int FIXED_FIELDS = 5;
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	private GovDocsManifest() {
+		// Use read()
+	}
+
+	/**
+	 * @param file
+	 *            the manifest file to read
+	 * @return the manifest read from the file, or an empty one if the file is
+	 *         missing, of another version, or can't be read
+	 */
+	static GovDocsManifest read(final File file) {
+		GovDocsManifest manifest = new GovDocsManifest();
+		if (!file.isFile()) return manifest;
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(file), ENCODING));
+			try {
+				if (!VERSION.equals(reader.readLine())) return manifest;
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split(String.valueOf(TAB), -1);
+					if (fields.length < FIXED_FIELDS) continue;
+					Set<String> exts = new HashSet<String>(Arrays.asList(fields)
+							.subList(FIXED_FIELDS, fields.length));
+					manifest.entries.put(fields[0], new Entry(Long
+							.parseLong(fields[1]), Long.parseLong(fields[2]),
+							new FolderDetails(Integer.parseInt(fields[3]), Long
+									.parseLong(fields[4]), exts)));
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException excep) {
+			System.err.println("Could not read manifest: " + file + ", rescanning.");
+			manifest.entries.clear();
+		} catch (NumberFormatException excep) {
+			System.err.println("Corrupt manifest: " + file + ", rescanning.");
+			manifest.entries.clear();
+		}
+		return manifest;
+	}
+
+	/**
+	 * @param folder
+	 *            the folder or zip to look up
+	 * @return the recorded details, or null if there are none or the folder
+	 *         has changed since they were recorded
+	 */
+	synchronized FolderDetails get(final File folder) {
+		Entry entry = this.entries.get(folder.getName());
+		if ((entry == null) || (entry.modified != folder.lastModified())
+				|| (entry.length != folder.length())) {
+			return null;
+		}
+		return entry.details;
+	}
+
+	/**
+	 * @param folder
+	 *            the folder or zip scanned
+	 * @param details
+	 *            the details of the folder
+	 */
+	synchronized void put(final File folder, final FolderDetails details) {
+		this.entries.put(folder.getName(), new Entry(folder.lastModified(),
+				folder.length(), details));
+	}
+
+	/**
+	 * Keeps only the entries of the given folders, so folders removed from the
+	 * corpus don't linger in the manifest.
+	 * 
+	 * @param folders
+	 *            the folders currently in the corpus
+	 */
+	synchronized void retain(final File[] folders) {
+		Set<String> names = new HashSet<String>();
+		for (File folder : folders) {
+			names.add(folder.getName());
+		}
+		this.entries.keySet().retainAll(names);
+	}
+
+	/**
+	 * Writes the manifest to a temporary file next to the target, then
+	 * renames it, so readers never see a half written manifest.
+	 * 
+	 * @param file
+	 *            the manifest file to write
+	 * @throws IOException
+	 *             if the manifest can't be written
+	 */
+	synchronized void write(final File file) throws IOException {
+		File temp = new File(file.getAbsolutePath() + ".tmp");
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(temp), ENCODING));
+		try {
+			writer.write(VERSION);
+			writer.write('\n');
+			for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+				Entry value = entry.getValue();
+				writer.write(entry.getKey());
+				writer.write(TAB);
+				writer.write(String.valueOf(value.modified));
+				writer.write(TAB);
+				writer.write(String.valueOf(value.length));
+				writer.write(TAB);
+				writer.write(String.valueOf(value.details.count));
+				writer.write(TAB);
+				writer.write(String.valueOf(value.details.size));
+				for (String ext : value.details.exts) {
+					writer.write(TAB);
+					writer.write(ext);
+				}
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		// Windows won't rename over an existing file
+		if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+			temp.delete();
+			throw new IOException("Could not replace manifest: " + file);
+		}
+	}
+
+	private static final class Entry {
+		final long modified;
+		final long length;
+		final FolderDetails details;
+
+		Entry(final long modified, final long length,
+				final FolderDetails details) {
+			this.modified = modified;
+			this.length = length;
+			this.details = details;
+		}
+	}
+}
@@ -23,13 +23,19 @@ import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import org.apache.commons.io.FilenameUtils;
 import org.opf_labs.fmts.corpora.CorpusDetails;
+import org.opf_labs.fmts.corpora.CorpusItem;
+import org.opf_labs.fmts.corpora.CorpusIterator;
+
+import com.google.common.collect.AbstractIterator;
 
 /**
  * Class that covers zipped version of GovDocsDirectories.
@@ -47,6 +53,7 @@ public final class GovDocsZipped extends AbstractGovDocs {
 	/** RegEx pattern for GovDocsDirectories zip "folder" name */
 	public static final String ZIP_REGEX = "\\d{3}\\." + ZIP_EXT;
 	static final Pattern ZIP_PATTERN = Pattern.compile(ZIP_REGEX);
+	private static final Pattern BASE_NAME_PATTERN = Pattern.compile("\\d{6}");
 	static final FilenameFilter ZIP_FILTER = new FilenameFilter() {
 		@Override
 		public boolean accept(File dir, String name) {
@@ -55,6 +62,8 @@ public final class GovDocsZipped extends AbstractGovDocs {
 	};
 
 	private ZipFile currFolder;
+	// Index of the current zip's entries by item number within the folder
+	private ZipEntry[] currEntries = new ZipEntry[FOLDER_SIZE];
 	private int current = -1;
 
 	private GovDocsZipped(final File root) {
@@ -103,33 +112,181 @@ public final class GovDocsZipped extends AbstractGovDocs {
 		return this.getItemEntry((folderNum * 1000) + fileNum).getName();
 	}
 
+	/**
+	 * Returns the numbers of all items in the corpus in ascending order. Each
+	 * zip is opened and indexed once as the iteration reaches it, so looking
+	 * up the items in the order returned means a single linear pass over the
+	 * corpus.
+	 * 
+	 * @return an iterator over the numbers of the items in the corpus
+	 */
+	public Iterator<Integer> itemNumbers() {
+		final File[] zips = this.root.listFiles(ZIP_FILTER);
+		Arrays.sort(zips);
+		return new AbstractIterator<Integer>() {
+			private int zip = -1;
+			private int item = FOLDER_SIZE;
+			private int folderNum;
+
+			@Override
+			protected Integer computeNext() {
+				while (true) {
+					while (this.item < FOLDER_SIZE) {
+						int itemNum = this.item++;
+						if (entryIndex(this.folderNum)[itemNum] != null) {
+							return Integer.valueOf(this.folderNum * FOLDER_SIZE + itemNum);
+						}
+					}
+					if (++this.zip >= zips.length) return endOfData();
+					this.folderNum = Integer.parseInt(FilenameUtils.getBaseName(zips[this.zip].getName()));
+					this.item = 0;
+				}
+			}
+		};
+	}
+
 	private ZipEntry getItemEntry(final int number) throws FileNotFoundException {
-		int folderNum = folderNumber(number);
-		if (folderNum != this.current) {
-			try {
-				if (this.current >= 0) this.currFolder.close();
-			} catch (IOException excep) {
-				// Do nothing
+		ZipEntry entry = entryIndex(folderNumber(number))[number % FOLDER_SIZE];
+		if (entry == null) {
+			throw new FileNotFoundException("Could not file file for number: "
+					+ number);
+		}
+		return entry;
+	}
+
+	/**
+	 * Opens and indexes the zip for the folder, unless it's the current one.
+	 * A missing or unreadable zip gets an empty index, so it's not retried for
+	 * every one of its items.
+	 * 
+	 * @param folderNum
+	 *            the number of the folder
+	 * @return the folder's entries indexed by item number within the folder
+	 */
+	private ZipEntry[] entryIndex(final int folderNum) {
+		if (folderNum == this.current) return this.currEntries;
+		try {
+			if (this.currFolder != null) this.currFolder.close();
+		} catch (IOException excep) {
+			// Do nothing
+		}
+		this.currFolder = null;
+		Arrays.fill(this.currEntries, null);
+		this.current = folderNum;
+		try {
+			this.currFolder = new ZipFile(this.root.getAbsolutePath() + File.separator
+					+ folderName(folderNum) + "." + ZIP_EXT);
+		} catch (IOException excep) {
+			return this.currEntries;
+		}
+		indexEntries(this.currFolder, folderNum, this.currEntries);
+		return this.currEntries;
+	}
+
+	/**
+	 * Indexes the zip's entries by item number within the folder, keeping the
+	 * first of any duplicates, and skipping items that belong in another zip.
+	 */
+	private void indexEntries(final ZipFile zip, final int folderNum, final ZipEntry[] index) {
+		Enumeration<? extends ZipEntry> entries = zip.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			if (entry.isDirectory()) continue;
+			String baseName = FilenameUtils.getBaseName(entry.getName());
+			if (!BASE_NAME_PATTERN.matcher(baseName).matches()) continue;
+			int number = Integer.parseInt(baseName);
+			if ((folderNumber(number) == folderNum) && (index[number % FOLDER_SIZE] == null)) {
+				index[number % FOLDER_SIZE] = entry;
 			}
+		}
+	}
+
+	/**
+	 * Each iterator opens its own zips, one at a time, and closes each zip as
+	 * it moves on to the next, or when it is closed. So an item's stream can
+	 * only be read until the iteration moves on to the next folder.
+	 * 
+	 * @see org.opf_labs.fmts.corpora.govdocs.AbstractGovDocs#itemIterator(int, int)
+	 */
+	@Override
+	protected CorpusIterator itemIterator(final int firstFolder, final int lastFolder) {
+		return new ZipIterator(foldersInRange(firstFolder, lastFolder, ZIP_PATTERN));
+	}
+
+	private final class ZipIterator extends AbstractIterator<CorpusItem> implements CorpusIterator {
+		private final File[] zips;
+		private final ZipEntry[] index = new ZipEntry[FOLDER_SIZE];
+		private int zip = -1;
+		private int item = FOLDER_SIZE;
+		private ZipFile zipFile;
+
+		ZipIterator(final File[] zips) {
+			this.zips = zips;
+		}
+
+		@Override
+		protected CorpusItem computeNext() {
+			while (true) {
+				while (this.item < FOLDER_SIZE) {
+					ZipEntry entry = this.index[this.item++];
+					if (entry != null) return new ZipItem(this.zipFile, entry);
+				}
+				closeZip();
+				if (++this.zip >= this.zips.length) return endOfData();
+				Arrays.fill(this.index, null);
+				this.item = 0;
+				try {
+					this.zipFile = new ZipFile(this.zips[this.zip]);
+					indexEntries(this.zipFile, Integer.parseInt(FilenameUtils.getBaseName(this.zips[this.zip].getName())), this.index);
+				} catch (IOException excep) {
+					System.err.println("Folder: " + this.zips[this.zip].getAbsolutePath() + " does not appear to be a valid zip file.");
+					this.item = FOLDER_SIZE;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			this.zip = this.zips.length;
+			this.item = FOLDER_SIZE;
+			closeZip();
+		}
+
+		private void closeZip() {
 			try {
-				this.currFolder = new ZipFile(this.root.getAbsolutePath() + File.separator
-						+ folderName(folderNum) + "." + ZIP_EXT);
+				if (this.zipFile != null) this.zipFile.close();
 			} catch (IOException excep) {
-				throw new FileNotFoundException("Could not file file for number: "
-						+ number);
+				// Do nothing
 			}
-			this.current = folderNum;
+			this.zipFile = null;
 		}
-		String baseName = baseName(number);
-		Enumeration<? extends ZipEntry> entries = this.currFolder.entries();
-		ZipEntry entry = null;
-		while (entries.hasMoreElements()) {
-			entry = entries.nextElement();
-			if (!entry.isDirectory()) {
-				if (FilenameUtils.getBaseName(entry.getName()).equals(baseName)) return entry;
-			}
+	}
+
+	private static final class ZipItem implements CorpusItem {
+		private final ZipFile zip;
+		private final ZipEntry entry;
+
+		ZipItem(final ZipFile zip, final ZipEntry entry) {
+			this.zip = zip;
+			this.entry = entry;
+		}
+
+		/**
+		 * The entry name, folder and all, the same as getItemName
+		 */
+		@Override
+		public String getName() {
+			return this.entry.getName();
+		}
+
+		@Override
+		public long getSize() {
+			return this.entry.getSize();
+		}
+
+		@Override
+		public InputStream getStream() throws IOException {
+			return this.zip.getInputStream(this.entry);
 		}
-		throw new FileNotFoundException("Could not file file for number: "
-				+ number);
 	}
 }
@@ -0,0 +1,403 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * 
+ */
+package org.opf_labs.fmts.corpora.govdocs;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+/**
+ * Generates synthetic corpora in the GovDocs layouts, so that throughput and
+ * load tests can run reproducibly without the real 470GB corpus. The same
+ * corpus can be written in the directory layout read by GovDocsDirectories,
+ * and in the zip layout read by GovDocsZipped, the items are identical in
+ * both.
+ * 
+ * Each folder holds a random selection of the folder's item numbers. Item
+ * sizes are spread log uniformly between a minimum and maximum, as real
+ * corpora hold many more small files than large ones. Each item starts with
+ * the real magic header of a format picked from a weighted mix, followed by
+ * random bytes, or random words for text formats. Everything is derived from
+ * a single seed, so a generator always writes the same corpus.
+ * 
+ * @version 0.1
+ */
+public final class SyntheticGovDocs {
+	/**
+	 * The formats of the synthetic items, with their magic headers.
+	 */
+	public enum Format {
+		/** Adobe PDF */
+		PDF("pdf", false, bytes("%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n")),
+		/** HTML, a text format */
+		HTML("html", true, bytes("<!DOCTYPE html>\n<html><head><title>")),
+		/** JPEG, JFIF flavour */
+		JPEG("jpg", false, new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF,
+				(byte) 0xE0, 0x00, 0x10, 'J', 'F', 'I', 'F', 0x00 }),
+		/** Plain text, no header */
+		TEXT("txt", true, new byte[0]),
+		/** Microsoft Office OLE2 compound document */
+		DOC("doc", false, new byte[] { (byte) 0xD0, (byte) 0xCF, 0x11,
+				(byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1 }),
+		/** XML, a text format */
+		XML("xml", true, bytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<data>")),
+		/** GIF 89a */
+		GIF("gif", false, bytes("GIF89a")),
+		/** PNG */
+		PNG("png", false, new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n',
+				0x1A, '\n' }),
+		/** Zip archive */
+		ZIP("zip", false, new byte[] { 'P', 'K', 0x03, 0x04 });
+
+		private final String extension;
+		private final boolean text;
+		private final byte[] magic;
+
+		private Format(final String extension, final boolean text,
+				final byte[] magic) {
+			this.extension = extension;
+			this.text = text;
+			this.magic = magic;
+		}
+
+		/**
+		 * @return the file extension for items of the format
+		 */
+		public String getExtension() {
+			return this.extension;
+		}
+
+		private static byte[] bytes(final String header) {
+			byte[] bytes = new byte[header.length()];
+			for (int index = 0; index < bytes.length; index++) {
+				bytes[index] = (byte) header.charAt(index);
+			}
+			return bytes;
+		}
+	}
+
+	private static final byte[][] WORDS = { "the ".getBytes(Charsets.US_ASCII),
+			"government ".getBytes(Charsets.US_ASCII),
+			"document ".getBytes(Charsets.US_ASCII),
+			"of ".getBytes(Charsets.US_ASCII),
+			"report ".getBytes(Charsets.US_ASCII),
+			"and ".getBytes(Charsets.US_ASCII),
+			"public ".getBytes(Charsets.US_ASCII),
+			"data\n".getBytes(Charsets.US_ASCII) };
+	private static final Map<Format, Integer> GOVDOCS_MIX = new EnumMap<Format, Integer>(Format.class);
+	static {
+		// Roughly the most common formats in GovDocs1
+		GOVDOCS_MIX.put(Format.PDF, Integer.valueOf(30));
+		GOVDOCS_MIX.put(Format.HTML, Integer.valueOf(25));
+		GOVDOCS_MIX.put(Format.JPEG, Integer.valueOf(10));
+		GOVDOCS_MIX.put(Format.TEXT, Integer.valueOf(10));
+		GOVDOCS_MIX.put(Format.DOC, Integer.valueOf(10));
+		GOVDOCS_MIX.put(Format.XML, Integer.valueOf(5));
+		GOVDOCS_MIX.put(Format.GIF, Integer.valueOf(5));
+		GOVDOCS_MIX.put(Format.PNG, Integer.valueOf(3));
+		GOVDOCS_MIX.put(Format.ZIP, Integer.valueOf(2));
+	}
+
+	private final int folders;
+	private final int itemsPerFolder;
+	private final long seed;
+	private final int minSize;
+	private final int maxSize;
+	private final Format[] formats;
+	private final int[] cumulativeWeights;
+
+	private SyntheticGovDocs(final Generator generator) {
+		this.folders = generator.folders;
+		this.itemsPerFolder = generator.itemsPerFolder;
+		this.seed = generator.seed;
+		this.minSize = generator.minSize;
+		this.maxSize = generator.maxSize;
+		Map<Format, Integer> mix = generator.mix.isEmpty() ? GOVDOCS_MIX : generator.mix;
+		this.formats = new Format[mix.size()];
+		this.cumulativeWeights = new int[mix.size()];
+		int index = 0;
+		int total = 0;
+		for (Map.Entry<Format, Integer> weight : mix.entrySet()) {
+			total += weight.getValue().intValue();
+			this.formats[index] = weight.getKey();
+			this.cumulativeWeights[index++] = total;
+		}
+	}
+
+	/**
+	 * @param folders
+	 *            the number of folders, from folder 000 on
+	 * @param itemsPerFolder
+	 *            the number of items in each folder
+	 * @return a new generator builder
+	 */
+	public static final Generator generator(final int folders,
+			final int itemsPerFolder) {
+		Preconditions.checkArgument(
+				((folders > 0) && (folders <= AbstractGovDocs.FOLDER_SIZE)),
+				"Invalid folder count should be (0 < folders <= "
+						+ AbstractGovDocs.FOLDER_SIZE + ") NOT: " + folders);
+		Preconditions.checkArgument(
+				((itemsPerFolder > 0) && (itemsPerFolder <= AbstractGovDocs.FOLDER_SIZE)),
+				"Invalid item count should be (0 < itemsPerFolder <= "
+						+ AbstractGovDocs.FOLDER_SIZE + ") NOT: " + itemsPerFolder);
+		return new Generator(folders, itemsPerFolder);
+	}
+
+	/**
+	 * Builder class for SyntheticGovDocs
+	 * 
+	 * @version 0.1
+	 */
+	public static final class Generator {
+		final int folders;
+		final int itemsPerFolder;
+		long seed = 0L;
+		int minSize = 1024;
+		int maxSize = 1024 * 1024;
+		final Map<Format, Integer> mix = new EnumMap<Format, Integer>(Format.class);
+
+		Generator(final int folders, final int itemsPerFolder) {
+			this.folders = folders;
+			this.itemsPerFolder = itemsPerFolder;
+		}
+
+		/**
+		 * @param seed
+		 *            the seed everything is generated from
+		 * @return this builder
+		 */
+		public Generator seed(final long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * @param minSize
+		 *            the smallest item size in bytes
+		 * @param maxSize
+		 *            the largest item size in bytes
+		 * @return this builder
+		 */
+		public Generator sizes(final int minSize, final int maxSize) {
+			Preconditions.checkArgument(minSize > 0, "minSize < 1");
+			Preconditions.checkArgument(maxSize >= minSize, "maxSize < minSize");
+			this.minSize = minSize;
+			this.maxSize = maxSize;
+			return this;
+		}
+
+		/**
+		 * Adds a format to the mix, if no formats are added the mix roughly
+		 * follows GovDocs1.
+		 * 
+		 * @param format
+		 *            the format to add
+		 * @param weight
+		 *            the relative weight of the format in the mix
+		 * @return this builder
+		 */
+		public Generator format(final Format format, final int weight) {
+			Preconditions.checkNotNull(format, "format==null");
+			Preconditions.checkArgument(weight > 0, "weight < 1");
+			this.mix.put(format, Integer.valueOf(weight));
+			return this;
+		}
+
+		/**
+		 * @return the constructed SyntheticGovDocs
+		 */
+		public SyntheticGovDocs build() {
+			return new SyntheticGovDocs(this);
+		}
+	}
+
+	/**
+	 * @return the total number of items in the corpus
+	 */
+	public int getItemCount() {
+		return this.folders * this.itemsPerFolder;
+	}
+
+	/**
+	 * @param folderNum
+	 *            the number of the folder
+	 * @return the item numbers in the folder, in order
+	 */
+	public int[] getItemNumbers(final int folderNum) {
+		Preconditions.checkArgument(
+				((folderNum >= 0) && (folderNum < this.folders)),
+				"Invalid folder number should be (0 <= folderNum < "
+						+ this.folders + ") NOT: " + folderNum);
+		// Partial shuffle picks the folder's items without repeats
+		Random random = new Random(this.seed * 31L + folderNum);
+		int[] slots = new int[AbstractGovDocs.FOLDER_SIZE];
+		for (int slot = 0; slot < slots.length; slot++) {
+			slots[slot] = slot;
+		}
+		for (int slot = 0; slot < this.itemsPerFolder; slot++) {
+			int swap = slot + random.nextInt(slots.length - slot);
+			int temp = slots[slot];
+			slots[slot] = slots[swap];
+			slots[swap] = temp;
+		}
+		int[] numbers = Arrays.copyOf(slots, this.itemsPerFolder);
+		Arrays.sort(numbers);
+		for (int index = 0; index < numbers.length; index++) {
+			numbers[index] += folderNum * AbstractGovDocs.FOLDER_SIZE;
+		}
+		return numbers;
+	}
+
+	/**
+	 * Writes the corpus as numbered directories of items under the root.
+	 * 
+	 * @param root
+	 *            the root directory of the corpus, created if missing
+	 * @throws IOException
+	 *             if an item can't be written
+	 */
+	public void writeDirectories(final File root) throws IOException {
+		for (int folderNum = 0; folderNum < this.folders; folderNum++) {
+			File folder = new File(root, folderName(folderNum));
+			FileUtils.forceMkdir(folder);
+			for (int number : getItemNumbers(folderNum)) {
+				Random random = itemRandom(number);
+				Format format = format(random);
+				FileUtils.writeByteArrayToFile(new File(folder, itemName(number,
+						format)), item(random, format));
+			}
+		}
+	}
+
+	/**
+	 * Writes the corpus as numbered zips of items under the root.
+	 * 
+	 * @param root
+	 *            the root directory of the corpus, created if missing
+	 * @throws IOException
+	 *             if a zip can't be written
+	 */
+	public void writeZips(final File root) throws IOException {
+		FileUtils.forceMkdir(root);
+		for (int folderNum = 0; folderNum < this.folders; folderNum++) {
+			String folderName = folderName(folderNum);
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(
+					new File(root, folderName + "." + GovDocsZipped.ZIP_EXT)));
+			try {
+				ZipOutputStream zip = new ZipOutputStream(out);
+				for (int number : getItemNumbers(folderNum)) {
+					Random random = itemRandom(number);
+					Format format = format(random);
+					zip.putNextEntry(new ZipEntry(folderName + "/"
+							+ itemName(number, format)));
+					zip.write(item(random, format));
+					zip.closeEntry();
+				}
+				zip.finish();
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	private Random itemRandom(final int number) {
+		// Seeded per item, so both layouts hold the same items
+		return new Random((this.seed * 1000003L) + number);
+	}
+
+	private Format format(final Random random) {
+		int pick = random.nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]);
+		int index = 0;
+		while (pick >= this.cumulativeWeights[index]) {
+			index++;
+		}
+		return this.formats[index];
+	}
+
+	private byte[] item(final Random random, final Format format) {
+		double logMin = Math.log(this.minSize);
+		double logMax = Math.log(this.maxSize);
+		int size = (int) Math.min(this.maxSize,
+				Math.round(Math.exp(logMin + (random.nextDouble() * (logMax - logMin)))));
+		byte[] item = new byte[size];
+		int header = Math.min(size, format.magic.length);
+		System.arraycopy(format.magic, 0, item, 0, header);
+		if (format.text) {
+			for (int index = header; index < size;) {
+				byte[] word = WORDS[random.nextInt(WORDS.length)];
+				int length = Math.min(word.length, size - index);
+				System.arraycopy(word, 0, item, index, length);
+				index += length;
+			}
+		} else if (header < size) {
+			byte[] body = new byte[size - header];
+			random.nextBytes(body);
+			System.arraycopy(body, 0, item, header, body.length);
+		}
+		return item;
+	}
+
+	private static String folderName(final int folderNum) {
+		return String.format("%03d", Integer.valueOf(folderNum));
+	}
+
+	private static String itemName(final int number, final Format format) {
+		return String.format("%06d", Integer.valueOf(number)) + "."
+				+ format.getExtension();
+	}
+
+	/**
+	 * Writes a synthetic corpus from the command line.
+	 * 
+	 * @param args
+	 *            root directory, dir or zip layout, number of folders, items
+	 *            per folder, and optionally the seed
+	 * @throws IOException
+	 *             if the corpus can't be written
+	 */
+	public static void main(String... args) throws IOException {
+		if (args.length < 4) {
+			System.err.println("Expected a root directory, dir or zip, the number of folders, "
+					+ "the number of items per folder, and optionally a seed.");
+			return;
+		}
+		Generator generator = generator(Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+		if (args.length > 4) generator.seed(Long.parseLong(args[4]));
+		SyntheticGovDocs corpus = generator.build();
+		if ("zip".equals(args[1])) {
+			corpus.writeZips(new File(args[0]));
+		} else {
+			corpus.writeDirectories(new File(args[0]));
+		}
+	}
+}
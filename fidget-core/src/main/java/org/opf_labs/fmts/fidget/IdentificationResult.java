@@ -16,6 +16,7 @@
 package org.opf_labs.fmts.fidget;
 
 import java.net.URI;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.tika.mime.MediaType;
 
@@ -28,7 +29,8 @@ import org.apache.tika.mime.MediaType;
  * more. Set to be close to the max bytes required by Tika.</li>
  * <li>location: URI of bytestream if known, or STREAM_LOC for streams.</li>
  * <li>mime: the Tika MediaType returned when identified by Tika</li>
- * <li>duration: the time taken by Tika in millisecs</li>
+ * <li>duration: the time taken by Tika, measured in nanosecs and also
+ * available in millisecs</li>
  * </ul>
  * 
  * @author <a href="mailto:carl@openplanetsfoundation.org">Carl Wilson</a>.</p>
@@ -46,18 +48,18 @@ public final class IdentificationResult {
 	private final String hash64K;
 	private final URI location;
 	private final MediaType mime;
-	private final long duration;
+	private final long durationNanos;
 
 	IdentificationResult(final String hash64K, final URI location,
-			final MediaType mime, long duration) {
+			final MediaType mime, long durationNanos) {
 		assert (hash64K != null);
 		assert (location != null);
 		assert (mime != null);
-		assert (duration > 0);
+		assert (durationNanos >= 0);
 		this.hash64K = hash64K;
 		this.location = location;
 		this.mime = mime;
-		this.duration = duration;
+		this.durationNanos = durationNanos;
 	}
 
 	/**
@@ -78,7 +80,14 @@ public final class IdentificationResult {
 	 * @return the time in milliseconds that identification took
 	 */
 	public long getDuration() {
-		return this.duration;
+		return TimeUnit.NANOSECONDS.toMillis(this.durationNanos);
+	}
+
+	/**
+	 * @return the time in nanoseconds that identification took
+	 */
+	public long getDurationNanos() {
+		return this.durationNanos;
 	}
 
 	/**
@@ -94,8 +103,8 @@ public final class IdentificationResult {
 	@Override
 	public String toString() {
 		return "IdentificationResult [hash64K=" + this.hash64K + ", location="
-				+ this.location + ", mime=" + this.mime + ", duration="
-				+ this.duration + "]";
+				+ this.location + ", mime=" + this.mime + ", durationNanos="
+				+ this.durationNanos + "]";
 	}
 
 	/**
@@ -106,7 +115,7 @@ public final class IdentificationResult {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result
-				+ (int) (this.duration ^ (this.duration >>> 32));
+				+ (int) (this.durationNanos ^ (this.durationNanos >>> 32));
 		result = prime * result
 				+ ((this.hash64K == null) ? 0 : this.hash64K.hashCode());
 		result = prime * result
@@ -129,7 +138,7 @@ public final class IdentificationResult {
 		}
 
 		IdentificationResult other = (IdentificationResult) obj;
-		if (this.duration != other.duration) {
+		if (this.durationNanos != other.durationNanos) {
 			return false;
 		}
 		if (this.hash64K == null) {
@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * 
+ */
+package org.opf_labs.fmts.fidget;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.apache.tika.mime.MimeTypeException;
+import org.apache.tika.mime.MimeTypes;
+import org.apache.tika.mime.MimeTypesFactory;
+
+/**
+ * Cache of parsed Tika MimeTypes repositories, keyed by a SHA256 hash of the
+ * MIME definitions they were parsed from, in loading order. Parsing the
+ * definitions takes hundreds of milliseconds, so testers created from the
+ * same definitions share one repository instead of parsing them again.
+ * 
+ * The shared repositories must not be changed by their users. The most
+ * recently used repositories are kept, so custom signatures uploaded once
+ * don't stay in memory for good.
+ * 
+ * @version 0.1
+ */
+final class MimeTypesCache {
+	// The number of repositories kept in memory
+	static final int CACHED_REPOSITORIES = 16;
+	// java.security.digest name for the SHA256 algorithm
+	private static final String SHA256_NAME = "SHA-256";
+	@SuppressWarnings("serial")
+	private static final Map<String, MimeTypes> REPOSITORIES = new LinkedHashMap<String, MimeTypes>(
+			CACHED_REPOSITORIES, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MimeTypes> eldest) {
+			return size() > CACHED_REPOSITORIES;
+		}
+	};
+
+	private MimeTypesCache() {
+		throw new AssertionError("NO THROUGH ROAD");
+	}
+
+	/**
+	 * Reads the definitions from the streams, and returns the cached repository
+	 * for them, only parsing them if they haven't been seen before. The streams
+	 * are read to the end but aren't closed.
+	 * 
+	 * @param streams
+	 *            the mime type definition streams, in loading order
+	 * @return the repository for the definitions
+	 * @throws IOException
+	 *             if a stream can not be read
+	 * @throws MimeTypeException
+	 *             if the type configuration is invalid
+	 */
+	static MimeTypes fromStreams(final InputStream... streams)
+			throws IOException, MimeTypeException {
+		final byte[][] sources = new byte[streams.length][];
+		final MessageDigest sha256 = newDigest();
+		for (int index = 0; index < streams.length; index++) {
+			sources[index] = IOUtils.toByteArray(streams[index]);
+			// Hash the lengths too, so moving bytes between sources changes the key
+			sha256.update(lengthBytes(sources[index].length));
+			sha256.update(sources[index]);
+		}
+		final String key = Hex.encodeHexString(sha256.digest());
+		MimeTypes repo = get(key);
+		if (repo != null) return repo;
+		// Parsed outside the lock, so a slow parse doesn't hold up cache hits
+		final InputStream[] parsed = new InputStream[sources.length];
+		for (int index = 0; index < sources.length; index++) {
+			parsed[index] = new ByteArrayInputStream(sources[index]);
+		}
+		repo = MimeTypesFactory.create(parsed);
+		synchronized (REPOSITORIES) {
+			final MimeTypes cached = REPOSITORIES.get(key);
+			if (cached != null) return cached;
+			REPOSITORIES.put(key, repo);
+		}
+		return repo;
+	}
+
+	/**
+	 * @return the number of repositories currently cached
+	 */
+	static int size() {
+		synchronized (REPOSITORIES) {
+			return REPOSITORIES.size();
+		}
+	}
+
+	private static MimeTypes get(final String key) {
+		synchronized (REPOSITORIES) {
+			return REPOSITORIES.get(key);
+		}
+	}
+
+	private static byte[] lengthBytes(final int length) {
+		return new byte[] { (byte) (length >>> 24), (byte) (length >>> 16),
+				(byte) (length >>> 8), (byte) length };
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(SHA256_NAME);
+		} catch (NoSuchAlgorithmException excep) {
+			throw new IllegalStateException(
+					"No digest algorithm implementation for " + SHA256_NAME
+							+ ", check you Java installation.");
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.fidget;
+
+import java.io.IOException;
+
+/**
+ * Receives identification results one at a time as they are produced, so
+ * that callers identifying a whole corpus don't have to hold every result in
+ * memory.
+ * 
+ * @see ResultSinks for the standard sinks
+ * @version 0.1
+ */
+public interface ResultSink {
+	/**
+	 * @param result
+	 *            the next identification result
+	 * @throws IOException
+	 *             if the sink can't record the result
+	 */
+	public void add(IdentificationResult result) throws IOException;
+
+	/**
+	 * Signals that there are no more results, flushing any buffered output.
+	 * Closing a sink doesn't close any Writer it was created with.
+	 * 
+	 * @throws IOException
+	 *             if the sink can't be flushed
+	 */
+	public void close() throws IOException;
+}
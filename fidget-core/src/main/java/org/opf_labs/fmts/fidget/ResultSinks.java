@@ -0,0 +1,263 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.fidget;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.mime.MediaType;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Static factory class for the standard {@link ResultSink}s:
+ * 
+ * <ul>
+ * <li>{@link #tsv(Writer)} writes a tab separated line per result.</li>
+ * <li>{@link #jsonLines(Writer)} writes a JSON object per line.</li>
+ * <li>{@link #aggregator()} only keeps counts per MIME type.</li>
+ * <li>{@link #list(List)} adds the results to a list, for small runs.</li>
+ * </ul>
+ * 
+ * All of the sinks are safe to share between threads.
+ * 
+ * @version 0.1
+ */
+public final class ResultSinks {
+	private final static char TAB = '\t';
+	private final static char NEWLINE = '\n';
+	/** The header line written by the TSV sink */
+	public final static String TSV_HEADER = "location" + TAB + "mime" + TAB
+			+ "hash64K" + TAB + "duration";
+
+	private ResultSinks() {
+		throw new AssertionError("NO THROUGH ROAD, use the static methods.");
+	}
+
+	/**
+	 * @param writer
+	 *            the writer to write the results to, a header line is written
+	 *            first
+	 * @return a sink writing a tab separated line per result
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public static final ResultSink tsv(final Writer writer) throws IOException {
+		Preconditions.checkNotNull(writer, "writer==null");
+		writer.write(TSV_HEADER);
+		writer.write(NEWLINE);
+		return new WriterSink(writer) {
+			@Override
+			void write(final IdentificationResult result) throws IOException {
+				this.writer.write(result.getLocation().toString());
+				this.writer.write(TAB);
+				this.writer.write(String.valueOf(result.getMime()));
+				this.writer.write(TAB);
+				this.writer.write(result.getHash64K());
+				this.writer.write(TAB);
+				this.writer.write(String.valueOf(result.getDuration()));
+				this.writer.write(NEWLINE);
+			}
+		};
+	}
+
+	/**
+	 * @param writer
+	 *            the writer to write the results to
+	 * @return a sink writing a JSON object per line per result
+	 */
+	public static final ResultSink jsonLines(final Writer writer) {
+		Preconditions.checkNotNull(writer, "writer==null");
+		return new WriterSink(writer) {
+			@Override
+			void write(final IdentificationResult result) throws IOException {
+				this.writer.write(toJson(result));
+				this.writer.write(NEWLINE);
+			}
+		};
+	}
+
+	/**
+	 * @return a new sink that counts the results for each MIME type
+	 */
+	public static final Aggregator aggregator() {
+		return new Aggregator();
+	}
+
+	/**
+	 * @param results
+	 *            the list to add the results to
+	 * @return a sink that adds every result to the list
+	 */
+	public static final ResultSink list(final List<IdentificationResult> results) {
+		Preconditions.checkNotNull(results, "results==null");
+		return new ResultSink() {
+			@Override
+			public synchronized void add(final IdentificationResult result) {
+				results.add(result);
+			}
+
+			@Override
+			public void close() {
+				// Nothing to flush
+			}
+		};
+	}
+
+	/**
+	 * @param result
+	 *            the result to convert
+	 * @return the result as a single line JSON object
+	 */
+	public static final String toJson(final IdentificationResult result) {
+		StringBuilder json = new StringBuilder("{\"location\":");
+		appendJsonString(json, result.getLocation().toString());
+		json.append(",\"mime\":");
+		if (result.getMime() == null) {
+			json.append("null");
+		} else {
+			appendJsonString(json, result.getMime().toString());
+		}
+		json.append(",\"hash64K\":");
+		appendJsonString(json, result.getHash64K());
+		json.append(",\"duration\":").append(result.getDuration()).append('}');
+		return json.toString();
+	}
+
+	private static void appendJsonString(final StringBuilder json,
+			final String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char chr = value.charAt(i);
+			switch (chr) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			case '\n':
+				json.append("\\n");
+				break;
+			case '\r':
+				json.append("\\r");
+				break;
+			case '\t':
+				json.append("\\t");
+				break;
+			default:
+				if (chr < 0x20) {
+					json.append(String.format("\\u%04x", Integer.valueOf(chr)));
+				} else {
+					json.append(chr);
+				}
+			}
+		}
+		json.append('"');
+	}
+
+	private abstract static class WriterSink implements ResultSink {
+		final Writer writer;
+
+		WriterSink(final Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public final synchronized void add(final IdentificationResult result)
+				throws IOException {
+			Preconditions.checkNotNull(result, "result==null");
+			write(result);
+		}
+
+		abstract void write(final IdentificationResult result)
+				throws IOException;
+
+		@Override
+		public final synchronized void close() throws IOException {
+			this.writer.flush();
+		}
+	}
+
+	/**
+	 * In memory sink that keeps a count of results per MIME type, and the
+	 * total identification time, but not the results themselves.
+	 * 
+	 * @version 0.1
+	 */
+	public static final class Aggregator implements ResultSink {
+		private final Map<MediaType, Integer> counts = new HashMap<MediaType, Integer>();
+		private int count = 0;
+		private long durationNanos = 0L;
+
+		Aggregator() {
+			// Use ResultSinks.aggregator()
+		}
+
+		@Override
+		public synchronized void add(final IdentificationResult result) {
+			Preconditions.checkNotNull(result, "result==null");
+			Integer mimeCount = this.counts.get(result.getMime());
+			this.counts.put(result.getMime(), Integer
+					.valueOf((mimeCount == null) ? 1 : mimeCount.intValue() + 1));
+			this.count++;
+			// Summed in nanoseconds, as most single results take under 1ms
+			this.durationNanos += result.getDurationNanos();
+		}
+
+		@Override
+		public void close() {
+			// Nothing to flush
+		}
+
+		/**
+		 * @return the number of results added
+		 */
+		public synchronized int getCount() {
+			return this.count;
+		}
+
+		/**
+		 * @return the total duration of all results added in milliseconds
+		 */
+		public synchronized long getDuration() {
+			return TimeUnit.NANOSECONDS.toMillis(this.durationNanos);
+		}
+
+		/**
+		 * @return a copy of the result count per MIME type, results without a
+		 *         MIME type are counted under null
+		 */
+		public synchronized Map<MediaType, Integer> getCounts() {
+			return Collections.unmodifiableMap(new HashMap<MediaType, Integer>(
+					this.counts));
+		}
+
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public synchronized String toString() {
+			return "Aggregator [count=" + this.count + ", duration="
+					+ getDuration() + ", counts=" + this.counts + "]";
+		}
+	}
+}
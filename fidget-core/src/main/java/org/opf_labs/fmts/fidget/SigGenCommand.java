@@ -37,6 +37,8 @@ import org.opf_labs.fmts.fidget.droid.SigDefSubmission;
 import org.opf_labs.fmts.mimeinfo.MimeInfo;
 import org.opf_labs.fmts.mimeinfo.MimeInfoUtils;
 
+import com.yammer.metrics.reporting.ConsoleReporter;
+
 /**
  * @author Andrew Jackson <Andrew.Jackson@bl.uk>
  *
@@ -66,6 +68,7 @@ public class SigGenCommand {
 		options.addOption( "A", "alone", false, "use only the supplied signature file, do not load the embedded ones" );
 		options.addOption( "C", "convert-to-droid", false, "convert supplied signature file into DROID form" );
 		options.addOption( "l", "list", false, "list all known types.");
+		options.addOption( "m", "metrics", false, "print identification latencies to stderr.");
 		options.addOption( "?", "help", false, "print help message");
 
 		if (args.length == 0) { 
@@ -120,6 +123,9 @@ public class SigGenCommand {
 				TikaSigTester tst = SigGenCommand.tikaStarter(sigfile, line.hasOption("A"));
 				// Return result:
 				System.out.println(""+tst.identify(new File(""+line.getArgList().get(0))));
+				if( line.hasOption("m") ) {
+					new ConsoleReporter(System.err).run();
+				}
 				return;
 			}
 		}
@@ -18,17 +18,16 @@
  */
 package org.opf_labs.fmts.fidget;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.tika.io.TikaInputStream;
@@ -36,8 +35,15 @@ import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MimeTypes;
 
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+
 /**
- * Pretty
+ * Static identification and hashing methods behind TikaSigTester. They're
+ * safe to call from several threads at once, each thread gets its own digest
+ * and buffer. A stream is only read once, up to the first 64K, and the same
+ * bytes are used for both identification and hashing.
  * 
  * @author  <a href="mailto:carl@openplanetsfoundation.org">Carl Wilson</a>.</p>
  *          <a href="https://github.com/carlwilson">carlwilson AT github</a>.</p>
@@ -48,21 +54,40 @@ import org.apache.tika.mime.MimeTypes;
 
 class TikaIdentifier {
 	private static final int HASH_LENGTH = 1024 * 64;
+	// Per stage latencies, reported in microseconds
+	private static final Timer READ_TIMER = Metrics.newTimer(
+			TikaIdentifier.class, "read", TimeUnit.MICROSECONDS,
+			TimeUnit.SECONDS);
+	private static final Timer IDENTIFY_TIMER = Metrics.newTimer(
+			TikaIdentifier.class, "identify", TimeUnit.MICROSECONDS,
+			TimeUnit.SECONDS);
+	private static final Timer HASH_TIMER = Metrics.newTimer(
+			TikaIdentifier.class, "hash", TimeUnit.MICROSECONDS,
+			TimeUnit.SECONDS);
 	// java.security.digest name for the SHA256 algorithm
 	private static final String SHA256_NAME = "SHA-256";
-	private static final MessageDigest SHA256;
-	static {
-		try {
-			// Then for a SHA 256 one
-			SHA256 = MessageDigest.getInstance(SHA256_NAME);
-		} catch (NoSuchAlgorithmException excep) {
-			// If this happens the Java Digest algorithms aren't present, a
-			// faulty Java install??
-			throw new IllegalStateException(
-					"No digest algorithm implementation for " + SHA256_NAME
-							+ ", check you Java installation.");
+	// Digests and buffers aren't thread safe, so each thread gets its own
+	private static final ThreadLocal<MessageDigest> SHA256 = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				// Then for a SHA 256 one
+				return MessageDigest.getInstance(SHA256_NAME);
+			} catch (NoSuchAlgorithmException excep) {
+				// If this happens the Java Digest algorithms aren't present, a
+				// faulty Java install??
+				throw new IllegalStateException(
+						"No digest algorithm implementation for " + SHA256_NAME
+								+ ", check you Java installation.");
+			}
 		}
-	}
+	};
+	private static final ThreadLocal<byte[]> PREFIX_BUFFER = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[HASH_LENGTH];
+		}
+	};
 	
 	private TikaIdentifier() {
 		throw new AssertionError("NO THROUGH ROAD");
@@ -98,29 +123,54 @@ class TikaIdentifier {
 		return fromStream(mimeRepo, stream, IdentificationResult.STREAM_LOC);
 	}
 
+	/**
+	 * Identifies and hashes the stream in a single pass. The first
+	 * {@link #HASH_LENGTH} bytes, or more if the repository needs them, are
+	 * read once into this thread's buffer, then Tika detects the type from
+	 * the buffer and the same bytes are hashed.
+	 * 
+	 * @param mimeRepo
+	 *            the MIME repository to identify with
+	 * @param stream
+	 *            the stream to identify, it's read no further than needed
+	 * @param loc
+	 *            the location of the stream, used for the result and for
+	 *            name based detection
+	 * @return the new IdentificationResult, with the ERROR_LOC location if
+	 *         the stream couldn't be read
+	 */
 	static final IdentificationResult fromStream(
 			final MimeTypes mimeRepo, final InputStream stream, URI loc) {
-		// Get a buffered input stream that supports marks
-		BufferedInputStream mrkStr = new BufferedInputStream(stream);
-		assert (mrkStr.markSupported());
-		// put the mark at the begining, and should be comfortable for Tika id
-		// length
-		mrkStr.mark(mimeRepo.getMinLength() * 2);
-		// identify and time
-		long start = new Date().getTime();
-		MediaType mime = identify(mimeRepo, stream, loc);
-		long duration = new Date().getTime() - start;
-		// Now reset the stream and hash
-		IdentificationResult result;
+		int needed = prefixLength(mimeRepo);
+		byte[] buff = prefixBuffer(needed);
+		int length;
+		TimerContext reading = READ_TIMER.time();
 		try {
-			mrkStr.reset();
-			result = new IdentificationResult(hash64K(stream), loc, mime,
-					duration);
+			length = readPrefix(stream, buff, needed);
 		} catch (IOException excep) {
-			// OK couldn't read or hash stream, record error and what we have
-			result = new IdentificationResult("", IdentificationResult.ERROR_LOC, mime, duration);
+			// OK couldn't read the stream, record the error
+			return new IdentificationResult("", IdentificationResult.ERROR_LOC,
+					MediaType.OCTET_STREAM, 0L);
+		} finally {
+			reading.stop();
 		}
-		return result;
+		// identify and time
+		long start = System.nanoTime();
+		MediaType mime = identify(mimeRepo, new ByteArrayInputStream(buff, 0,
+				length), loc);
+		long duration = System.nanoTime() - start;
+		IDENTIFY_TIMER.update(duration, TimeUnit.NANOSECONDS);
+		return new IdentificationResult(hash(buff, Math.min(length,
+				HASH_LENGTH)), loc, mime, duration);
+	}
+
+	/**
+	 * @param mimeRepo
+	 *            the MIME repository to identify with
+	 * @return the number of bytes read from a stream to identify and hash it
+	 */
+	static final int prefixLength(final MimeTypes mimeRepo) {
+		return Math.max(HASH_LENGTH, mimeRepo.getMinLength());
 	}
 
 	static MediaType identify(final MimeTypes mimeRepo,
@@ -137,14 +187,61 @@ class TikaIdentifier {
 		return mediaType;
 	}
 
+	/**
+	 * Hashes up to the first 64K of the stream. Safe to call from several
+	 * threads at once, each thread reuses its own digest and buffer.
+	 * 
+	 * @param stream
+	 *            the stream to hash
+	 * @return the hex encoded SHA-256 hash of up to the first 64K of the
+	 *         stream
+	 * @throws IOException
+	 *             if the stream can't be read
+	 */
 	static final String hash64K(final InputStream stream) throws IOException {
-		SHA256.reset();
-		// Create input streams for digest calculation
-		DigestInputStream SHA256Stream = new DigestInputStream(stream, SHA256);
-		byte[] buff = new byte[HASH_LENGTH];
-		// Read up to the 64K in on read
-		SHA256Stream.read(buff, 0, HASH_LENGTH);
-		// Return the new instance from the calulated details
-		return Hex.encodeHexString(SHA256.digest());
+		byte[] buff = prefixBuffer(HASH_LENGTH);
+		return hash(buff, readPrefix(stream, buff, HASH_LENGTH));
+	}
+
+	private static String hash(final byte[] buff, final int length) {
+		TimerContext hashing = HASH_TIMER.time();
+		try {
+			MessageDigest sha256 = SHA256.get();
+			sha256.reset();
+			sha256.update(buff, 0, length);
+			// Return the new instance from the calulated details
+			return Hex.encodeHexString(sha256.digest());
+		} finally {
+			hashing.stop();
+		}
+	}
+
+	/**
+	 * @return this thread's prefix buffer, grown to at least length bytes
+	 */
+	private static byte[] prefixBuffer(final int length) {
+		byte[] buff = PREFIX_BUFFER.get();
+		if (buff.length < length) {
+			buff = new byte[length];
+			PREFIX_BUFFER.set(buff);
+		}
+		return buff;
+	}
+
+	/**
+	 * Reads until length bytes are read or the stream ends, a single read
+	 * can return less than asked for even when there's more to come.
+	 * 
+	 * @return the number of bytes read
+	 */
+	private static int readPrefix(final InputStream stream, final byte[] buff,
+			final int length) throws IOException {
+		int total = 0;
+		while (total < length) {
+			int read = stream.read(buff, total, length - total);
+			if (read < 0) break;
+			total += read;
+		}
+		return total;
 	}
 }
@@ -31,7 +31,6 @@ import java.util.List;
 
 import org.apache.tika.mime.MimeTypeException;
 import org.apache.tika.mime.MimeTypes;
-import org.apache.tika.mime.MimeTypesFactory;
 
 /**
  * Utility class that provides laoding methods for the Tika Sig Definitions 
@@ -102,7 +101,7 @@ class TikaResourceHelper {
 
 	static final MimeTypes fromStreamArrays(final InputStream[] internal,
 			final InputStream[] supplied) throws IOException, MimeTypeException {
-		final MimeTypes repo = MimeTypesFactory.create(concat(internal,
+		final MimeTypes repo = MimeTypesCache.fromStreams(concat(internal,
 				supplied));
 		// Close our streams
 		for (InputStream str : internal) {
@@ -111,6 +110,11 @@ class TikaResourceHelper {
 		return repo;
 	}
 
+	static final MimeTypes fromUrls(final List<URL> urls) throws IOException,
+			MimeTypeException {
+		return fromStreamArrays(streamsFromUrls(urls), new InputStream[0]);
+	}
+
 	static final <T> T[] concat(final T[] first, final T[] second) {
 		T[] res = Arrays.copyOf(first, first.length + second.length);
 		System.arraycopy(second, 0, res, first.length, second.length);
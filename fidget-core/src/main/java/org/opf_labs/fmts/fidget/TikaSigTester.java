@@ -21,22 +21,31 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URI;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.SortedSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.tika.mime.MediaType;
 import org.apache.tika.mime.MimeType;
 import org.apache.tika.mime.MimeTypeException;
 import org.apache.tika.mime.MimeTypes;
 import org.apache.tika.mime.MimeTypesFactory;
+import org.opf_labs.fmts.corpora.CorpusItem;
+import org.opf_labs.fmts.corpora.CorpusIterator;
 import org.opf_labs.fmts.corpora.govdocs.GovDocs;
 import org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora;
 
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.reporting.ConsoleReporter;
+
 /**
  * Class that wraps the Apache Tika MimeTypes Repository for purposes of
  * developing and testing Tika signatures. The main feature is one of loading
@@ -58,6 +67,9 @@ import org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora;
  * caller.</li>
  * </ol>
  * 
+ * Testers created from the same definitions, in the same order, share one
+ * parsed repository, so only the first of them pays for parsing.
+ * 
  * @author <a href="mailto:carl@openplanetsfoundation.org">Carl Wilson</a>.</p>
  *         <a href="https://github.com/carlwilson">carlwilson AT github</a>.</p>
  * @version 0.1
@@ -66,6 +78,10 @@ import org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora;
  */
 public final class TikaSigTester {
 	private final static char TAB = '\t';
+	private final static String DEFAULT_OUTPUT = "d:/tika.txt";
+	private final static String JSON_LINES_EXT = ".jsonl";
+	// Number of files queued per worker thread when identifying in parallel
+	private final static int QUEUE_PER_THREAD = 64;
 	/**
 	 * The minimum data legnth required by Tika ID methods, BUT also the MAX
 	 * number of bytes read from a stream during identification. This was
@@ -92,8 +108,8 @@ public final class TikaSigTester {
 	 */
 	public final static TikaSigTester justTika() {
 		try {
-			final MimeTypes repo = MimeTypesFactory
-					.create(new URL[] { TikaResourceHelper.getCoreUrl() });
+			final MimeTypes repo = TikaResourceHelper.fromUrls(Collections
+					.singletonList(TikaResourceHelper.getCoreUrl()));
 			return new TikaSigTester(repo);
 		} catch (Exception excep) {
 			throw new IllegalStateException(excep);
@@ -108,9 +124,8 @@ public final class TikaSigTester {
 	 */
 	public final static TikaSigTester justCustom() {
 		try {
-			List<URL> custUrls = TikaResourceHelper.getCustomUrls();
-			final MimeTypes repo = MimeTypesFactory.create(custUrls
-					.toArray(new URL[custUrls.size()]));
+			final MimeTypes repo = TikaResourceHelper
+					.fromUrls(TikaResourceHelper.getCustomUrls());
 			return new TikaSigTester(repo);
 		} catch (Exception excep) {
 			throw new IllegalStateException(
@@ -129,9 +144,8 @@ public final class TikaSigTester {
 	 */
 	public final static TikaSigTester vanilla() {
 		try {
-			final MimeTypes repo = MimeTypesFactory.create(
-					TikaResourceHelper.TIKA_MIMETYPES,
-					TikaResourceHelper.CUSTOM_MIMETYPES);
+			final MimeTypes repo = TikaResourceHelper
+					.fromUrls(TikaResourceHelper.getVanillaUrls());
 			return new TikaSigTester(repo);
 		} catch (Exception excep) {
 			throw new IllegalStateException(
@@ -152,7 +166,7 @@ public final class TikaSigTester {
 	 */
 	public static final TikaSigTester streamsOnly(InputStream... streams)
 			throws MimeTypeException, IOException {
-		final MimeTypes repo = MimeTypesFactory.create(streams);
+		final MimeTypes repo = MimeTypesCache.fromStreams(streams);
 		return new TikaSigTester(repo);
 	}
 
@@ -299,42 +313,151 @@ public final class TikaSigTester {
 			throws FileNotFoundException {
 		return TikaIdentifier.fromStream(this.mimeRepository, stream);
 	}
+
+	/**
+	 * @param stream
+	 *            the stream to identify
+	 * @param location
+	 *            the location of the stream, used for the result and for
+	 *            name based detection
+	 * @return the IdentificationResult from the stream
+	 */
+	public IdentificationResult identify(InputStream stream, URI location) {
+		return TikaIdentifier.fromStream(this.mimeRepository, stream, location);
+	}
+
+	/**
+	 * @return the number of bytes read from the start of a stream to identify
+	 *         and hash it, any bytes after these don't change the result
+	 */
+	public int getPrefixLength() {
+		return TikaIdentifier.prefixLength(this.mimeRepository);
+	}
 	
 
-	List<IdentificationResult> identify(String govDocsData) {
+	/**
+	 * Identifies the files using a number of worker threads, passing each
+	 * result to the sink as soon as it's produced. Results arrive in no
+	 * particular order, and missing files are reported and skipped. Only a
+	 * bounded number of files are queued at a time. The sink is closed once
+	 * all files are identified.
+	 * 
+	 * @param files
+	 *            the files to identify
+	 * @param threads
+	 *            the number of worker threads to use
+	 * @param sink
+	 *            the sink to pass the results to, it must be thread safe
+	 * @throws IOException
+	 *             if the sink can't record a result
+	 */
+	public void identify(final Collection<File> files, final int threads,
+			final ResultSink sink) throws IOException {
+		Preconditions.checkNotNull(files, "files==null");
+		Preconditions.checkArgument(threads > 0, "threads < 1");
+		Preconditions.checkNotNull(sink, "sink==null");
+		// RuntimeExceptions as well, as a pool thread would drop them silently
+		final List<Exception> failures = Collections
+				.synchronizedList(new ArrayList<Exception>());
+		// A full queue makes the caller identify the file, throttling the loop
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+				0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+						threads * QUEUE_PER_THREAD),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		try {
+			for (final File file : files) {
+				if (!failures.isEmpty()) break;
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						if (!failures.isEmpty()) return;
+						try {
+							sink.add(identify(file));
+						} catch (FileNotFoundException excep) {
+							System.err.println("Missing file " + file);
+						} catch (IOException excep) {
+							failures.add(excep);
+						} catch (RuntimeException excep) {
+							failures.add(excep);
+						}
+					}
+				});
+			}
+		} finally {
+			executor.shutdown();
+			try {
+				while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+					// Still identifying the queued files
+				}
+			} catch (InterruptedException excep) {
+				executor.shutdownNow();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(
+						"Interrupted waiting for identification threads.");
+			}
+		}
+		if (!failures.isEmpty()) {
+			Exception failure = failures.get(0);
+			if (failure instanceof IOException) throw (IOException) failure;
+			throw (RuntimeException) failure;
+		}
+		sink.close();
+	}
+
+	List<IdentificationResult> identify(String govDocsData) throws IOException {
+		List<IdentificationResult> results = new ArrayList<IdentificationResult>();
+		identify(govDocsData, ResultSinks.list(results));
+		return results;
+	}
+
+	/**
+	 * Identifies every item of a GovDocs corpus, passing each result to the
+	 * sink as soon as it's produced, so memory use doesn't grow with the size
+	 * of the corpus. The sink is closed once all items are identified.
+	 * 
+	 * @param govDocsData
+	 *            the root directory of the GovDocs corpus
+	 * @param sink
+	 *            the sink to pass the results to
+	 * @throws IOException
+	 *             if the sink can't record a result
+	 */
+	public void identify(String govDocsData, ResultSink sink) throws IOException {
 		File govDocsRoot = new File(govDocsData);
 		System.out.println("Assessing Corpora:" + new Date());
 		GovDocsCorpora govDocs = GovDocs.newInstance(govDocsRoot);
 		System.out.println(govDocs);
-		List<IdentificationResult> results = new ArrayList<IdentificationResult>();
 		System.out.println("Start:" + new Date());
-		for (int foldNum = 0; foldNum < 1000; foldNum++) {
-			System.out.println("Folder:" + foldNum + " " + new Date());
-			for (int fileNum = 0; fileNum < 1000; fileNum++) {
+		// Walks only the items present, rather than trying every possible number,
+		// and closes the open folder if the sink fails part way
+		CorpusIterator items = govDocs.openItems(0, 999);
+		try {
+			while (items.hasNext()) {
+				CorpusItem item = items.next();
 				InputStream str = null;
-				URI ident;
+				URI ident = URI.create("govdoc:item:" + item.getName());
 				try {
-					str = govDocs.getItem(foldNum, fileNum);
-					ident = URI.create("govdoc:item:" + govDocs.getItemName(foldNum, fileNum));
-					IdentificationResult result = TikaIdentifier.fromStream(this.mimeRepository, str, ident);
-					results.add(result);
-				} catch (FileNotFoundException excep) {
-					System.err.println("Missing file number " + fileNum);
+					str = item.getStream();
+				} catch (IOException excep) {
+					System.err.println("Unreadable item " + item.getName());
 					System.err.println(excep);
-					//excep.printStackTrace();
 					// Just miss for now
+					continue;
 				}
-				finally {
+				try {
+					sink.add(TikaIdentifier.fromStream(this.mimeRepository, str, ident));
+				} finally {
 					try {
-						if (str != null) str.close();
+						str.close();
 					} catch (IOException excep) {
-						// TODO Auto-generated catch block
 						excep.printStackTrace();
 					}
 				}
 			}
+		} finally {
+			items.close();
 		}
-		return results;
+		sink.close();
 	}
 
 	/**
@@ -346,7 +469,8 @@ public final class TikaSigTester {
 	}
 
 	/**
-	 * A little test main to identify GovDocsDirectories from passed param
+	 * A little test main to identify GovDocsDirectories from passed param,
+	 * streaming the results to the output file named by the second param
 	 * 
 	 * @param args
 	 * @throws Exception
@@ -354,17 +478,21 @@ public final class TikaSigTester {
 	public static void main(String... args) throws Exception {
 		if (args.length > 0) {
 			String govDocsData = args[0];
+			String output = (args.length > 1) ? args[1] : DEFAULT_OUTPUT;
 			TikaSigTester sw = TikaSigTester.vanilla();
-			List<IdentificationResult> results = sw.identify(govDocsData);
-			FileWriter writer = new FileWriter("d:/tika.txt");
-			BufferedWriter out = new BufferedWriter(writer);
-			for (IdentificationResult result : results) {
-				System.out.println(result);
-				out.write(result.toString());
+			BufferedWriter out = new BufferedWriter(new FileWriter(output));
+			try {
+				ResultSink sink = (output.endsWith(JSON_LINES_EXT)) ? ResultSinks
+						.jsonLines(out) : ResultSinks.tsv(out);
+				sw.identify(govDocsData, sink);
+			} finally {
+				out.close();
 			}
-			out.close();
+			// Per stage latencies of the whole run
+			new ConsoleReporter(System.err).run();
 		} else {
-			System.err.println("Expected a GovDocsDirectories dir.");
+			System.err.println("Expected a GovDocsDirectories dir, and optionally an output file, "
+					+ JSON_LINES_EXT + " files are written as JSON lines, anything else as TSV.");
 		}
 
 	}
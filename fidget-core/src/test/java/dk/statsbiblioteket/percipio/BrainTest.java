@@ -1,8 +1,11 @@
 package dk.statsbiblioteket.percipio;
 
 import dk.statsbiblioteket.percipio.Brain;
+import dk.statsbiblioteket.percipio.datastructures.BytePattern;
 import dk.statsbiblioteket.percipio.datastructures.Score;
 import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.apache.commons.io.IOUtils;
+import org.opf_labs.fmts.corpora.CorpusItem;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -10,11 +13,24 @@ import org.junit.Test;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -105,4 +121,286 @@ public class BrainTest {
 
     }
 
+    @Test
+    public void testScoreAll() throws Exception {
+        List<File> pdffiles = Arrays.asList(new File("src/test/resources/pdf").listFiles());
+
+        Brain brain = new Brain();
+        Signature signature = brain.learn(pdffiles.subList(0, 4));
+        Map<File, Score> scores = brain.score(Arrays.asList(new Signature[]{signature}), pdffiles);
+        assertEquals(pdffiles.size(), scores.size());
+        for (File pdffile : pdffiles) {
+            assertEquals("Score of " + pdffile.getName(), referenceScore(signature, pdffile),
+                         scores.get(pdffile).getScoreboard().first().getA().intValue());
+        }
+    }
+
+    @Test
+    public void testScoreShortFile() throws Exception {
+        List<File> pdffiles = Arrays.asList(new File("src/test/resources/pdf").listFiles());
+        Brain brain = new Brain();
+        Signature signature = brain.learn(pdffiles);
+
+        File shortFile = File.createTempFile("percipio", ".pdf");
+        shortFile.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(shortFile);
+        out.write("%PDF-1.4".getBytes("US-ASCII"));
+        out.close();
+
+        //Too short for the trailer, which starts before the start of the file
+        boolean beforeStart = false;
+        for (BytePattern trailer : signature.getEndBlock().pattern) {
+            beforeStart |= signature.getGeneral().getBlockSize() - trailer.getOffset() > shortFile.length();
+        }
+        assertTrue(beforeStart);
+
+        Score score = brain.score(Arrays.asList(new Signature[]{signature}), shortFile);
+        assertEquals(1, score.getScoreboard().size());
+        assertEquals(referenceScore(signature, shortFile), score.getScoreboard().first().getA().intValue());
+    }
+
+    @Test
+    public void testScoreEndPatterns() throws Exception {
+        Signature signature = new Signature();
+        signature.getGeneral().setNumberOfFiles(3);
+        signature.getGeneral().setBlockSize(16);
+        signature.getFrontBlock().pattern.add(new BytePattern(0, "AB".getBytes("US-ASCII")));
+        //The last four bytes of the file
+        signature.getEndBlock().pattern.add(new BytePattern(12, "EOF!".getBytes("US-ASCII")));
+        SignatureMatcher matcher = new SignatureMatcher(Arrays.asList(new Signature[]{signature}));
+
+        File whole = write("ABcdEOF!");
+        assertEquals(3 * (2 + 4), matcher.score(whole).getScoreboard().first().getA().intValue());
+        assertEquals(3 * (2 + 4), referenceScore(signature, whole));
+        //The trailer would start two bytes before the start of the file
+        File truncated = write("AB");
+        assertEquals(3 * (2 - 4), matcher.score(truncated).getScoreboard().first().getA().intValue());
+        assertEquals(3 * (2 - 4), referenceScore(signature, truncated));
+        File other = write("xxxxxxxxxxxxEOF?");
+        assertEquals(3 * (-2 - 4), matcher.score(other).getScoreboard().first().getA().intValue());
+        assertEquals(3 * (-2 - 4), referenceScore(signature, other));
+    }
+
+    /**
+     * Score the file against the signature by reading each pattern from the file, as Percipio did before the
+     * patterns were compiled. Bytes past the end of the file read as zero, and an end pattern that starts before the
+     * start of the file is a mismatch.
+     */
+    private static int referenceScore(Signature signature, File file) throws Exception {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            int total = 0;
+            for (BytePattern pattern : signature.getFrontBlock().pattern) {
+                total += referenceMatches(in, pattern, pattern.getOffset()) ? pattern.getPattern().length
+                                                                           : -pattern.getPattern().length;
+            }
+            long blockStart = in.length() - signature.getGeneral().getBlockSize();
+            for (BytePattern pattern : signature.getEndBlock().pattern) {
+                total += referenceMatches(in, pattern, blockStart + pattern.getOffset()) ? pattern.getPattern().length
+                                                                                        : -pattern.getPattern().length;
+            }
+            return signature.getGeneral().getNumberOfFiles() * total;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static boolean referenceMatches(RandomAccessFile in, BytePattern pattern, long offset) throws Exception {
+        for (long start = offset; start <= offset + pattern.getRange(); start++) {
+            if (start < 0) {
+                continue;
+            }
+            byte[] read = new byte[pattern.getPattern().length];
+            in.seek(start);
+            in.read(read);
+            if (Arrays.equals(pattern.getPattern(), read)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testScoreParallel() throws Exception {
+        List<File> pdffiles = Arrays.asList(new File("src/test/resources/pdf").listFiles());
+
+        Brain brain = new Brain();
+        List<Signature> signatures = Arrays.asList(new Signature[]{brain.learn(pdffiles.subList(0, 4))});
+        Map<File, Score> sequential = brain.score(signatures, pdffiles);
+        Map<File, Score> parallel = brain.score(signatures, pdffiles, 3);
+        assertEquals(sequential.size(), parallel.size());
+        for (File pdffile : pdffiles) {
+            assertEquals("Sequential and parallel scores should agree for " + pdffile.getName(),
+                         sequential.get(pdffile).getScoreboard().first().getA(),
+                         parallel.get(pdffile).getScoreboard().first().getA());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testScoreParallelCallbackFails() throws Exception {
+        List<File> pdffiles = Arrays.asList(new File("src/test/resources/pdf").listFiles());
+
+        Brain brain = new Brain();
+        List<Signature> signatures = Arrays.asList(new Signature[]{brain.learn(pdffiles.subList(0, 4))});
+        //Thrown on the pool threads, where it used to be dropped with the file
+        brain.score(signatures, pdffiles, 3, new ScoreCallback() {
+            public void scored(File file, Score score) {
+                throw new IllegalStateException("Could not record " + file);
+            }
+        });
+    }
+
+    @Test
+    public void testLearnHeaderAndTrailer() throws Exception {
+        Random random = new Random(42);
+        List<File> files = new ArrayList<File>();
+        for (int length : new int[]{300, 1500, 5000}) {
+            byte[] content = new byte[length];
+            random.nextBytes(content);
+            System.arraycopy("MAGIC".getBytes("US-ASCII"), 0, content, 0, 5);
+            System.arraycopy("TRAILER".getBytes("US-ASCII"), 0, content, length - 9, 7);
+            File file = File.createTempFile("percipio", ".bin");
+            file.deleteOnExit();
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(content);
+            out.close();
+            files.add(file);
+        }
+        //Empty files can not match anything in the header, and are too short for the trailer
+        File empty = File.createTempFile("percipio", ".bin");
+        empty.deleteOnExit();
+
+        Signature signature = new Brain().learn(files);
+        BytePattern magic = signature.getFrontBlock().pattern.get(0);
+        assertEquals(0, magic.getOffset());
+        assertEquals("MAGIC", new String(magic.getPattern(), 0, 5, "US-ASCII"));
+        BytePattern trailer = signature.getEndBlock().pattern.get(signature.getEndBlock().pattern.size() - 1);
+        assertEquals(Brain.SIZE - 9, trailer.getOffset());
+        assertEquals("TRAILER", new String(trailer.getPattern(), "US-ASCII"));
+
+        files.add(empty);
+        assertTrue(new Brain().learn(files).getFrontBlock().pattern.isEmpty());
+    }
+
+    @Test
+    public void testLearnWrongExpectedLength() throws Exception {
+        Random random = new Random(42);
+        //Shared by the last block of every sample, except for its last few bytes
+        byte[] trailer = new byte[60];
+        random.nextBytes(trailer);
+        List<CorpusItem> samples = new ArrayList<CorpusItem>();
+        for (int i = 0; i < 3; i++) {
+            byte[] content = new byte[1000];
+            random.nextBytes(content);
+            System.arraycopy(trailer, 0, content, content.length - 64, trailer.length);
+            //The last sample is shorter than it claims, so the tail is skipped into and only half read
+            long expected = i < 2 ? content.length : content.length + 32;
+            samples.add(Samples.stream("sample" + i, new ByteArrayInputStream(content), expected));
+        }
+
+        //The half read tail must not be learned, together with the stale bytes of the sample before it
+        Signature signature = new Brain(64).learnItems(samples);
+        assertEquals(3, signature.getGeneral().getNumberOfFiles());
+        BytePattern learned = signature.getEndBlock().pattern.get(0);
+        assertEquals(0, learned.getOffset());
+        assertArrayEquals(trailer, learned.getPattern());
+    }
+
+    @Test
+    public void testBlockSize() throws Exception {
+        List<File> pdffiles = Arrays.asList(new File("src/test/resources/pdf").listFiles());
+        Brain brain = new Brain(64);
+        Signature signature = brain.learn(pdffiles.subList(0, 4));
+        for (BytePattern pattern : signature.getFrontBlock().pattern) {
+            assertTrue(pattern.getOffset() + pattern.getPattern().length <= 64);
+        }
+
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(signature, writer);
+        Signature read = (Signature) unmarshaller.unmarshal(new StringReader(writer.toString()));
+        assertEquals(64, read.getGeneral().getBlockSize());
+        assertEquals(Brain.SIZE, new Brain().learn(pdffiles.subList(0, 4)).getGeneral().getBlockSize());
+
+        //Only as much as the patterns need is read
+        Window window = new SignatureMatcher(Arrays.asList(new Signature[]{read})).newWindow();
+        assertTrue(window.getHead().length <= 64);
+        assertTrue(window.getTail().length <= 64);
+        Score score = brain.score(Arrays.asList(new Signature[]{read}), pdffiles.get(0));
+        assertTrue(score.getScoreboard().first().getA() > 0);
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        Signature signature = new Signature();
+        signature.getGeneral().setNumberOfFiles(1);
+        signature.getFrontBlock().pattern.add(new BytePattern(0, "%PDF".getBytes("US-ASCII"), 4));
+
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(signature, writer);
+        signature = (Signature) unmarshaller.unmarshal(new StringReader(writer.toString()));
+        assertEquals(4, signature.getFrontBlock().pattern.get(0).getRange());
+
+        SignatureMatcher matcher = new SignatureMatcher(Arrays.asList(new Signature[]{signature}));
+        assertEquals(8, matcher.newWindow().getHead().length);
+        assertEquals(4, matcher.score(write("  %PDF-1.4")).getScoreboard().first().getA().intValue());
+        assertEquals(-4, matcher.score(write("      %PDF-1.4")).getScoreboard().first().getA().intValue());
+    }
+
+    private static File write(String content) throws Exception {
+        File file = File.createTempFile("percipio", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("US-ASCII"));
+        out.close();
+        return file;
+    }
+
+    @Test
+    public void testLearnZipEntries() throws Exception {
+        List<File> pdffiles = Arrays.asList(new File("src/test/resources/pdf").listFiles());
+        File zip = File.createTempFile("percipio", ".zip");
+        zip.deleteOnExit();
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        for (File pdffile : pdffiles) {
+            out.putNextEntry(new ZipEntry(pdffile.getName()));
+            FileInputStream in = new FileInputStream(pdffile);
+            IOUtils.copy(in, out);
+            in.close();
+            out.closeEntry();
+        }
+        out.close();
+
+        Brain brain = new Brain();
+        StringWriter fromFiles = new StringWriter();
+        marshaller.marshal(brain.learn(pdffiles), fromFiles);
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            StringWriter fromZip = new StringWriter();
+            marshaller.marshal(brain.learnItems(Samples.zipEntries(zipFile)), fromZip);
+            assertEquals(fromFiles.toString(), fromZip.toString());
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void testLearnParallel() throws Exception {
+        List<File> pdffiles = Arrays.asList(new File("src/test/resources/pdf").listFiles());
+        Brain brain = new Brain();
+        String sequential = marshal(brain.learn(pdffiles));
+        String relearned = marshal(brain.relearn(brain.learn(pdffiles.subList(0, 2)), pdffiles.subList(2, pdffiles.size())));
+        for (int threads = 1; threads <= pdffiles.size() + 1; threads++) {
+            assertEquals("Learning with " + threads + " threads", sequential, marshal(brain.learn(pdffiles, threads)));
+            assertEquals("Relearning with " + threads + " threads", relearned,
+                         marshal(brain.relearn(brain.learn(pdffiles.subList(0, 2)),
+                                               pdffiles.subList(2, pdffiles.size()), threads)));
+        }
+    }
+
+    private String marshal(Signature signature) throws Exception {
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(signature, writer);
+        return writer.toString();
+    }
+
 }
@@ -0,0 +1,113 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opf_labs.fmts.corpora.govdocs.GovDocs;
+import org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora;
+import org.opf_labs.fmts.corpora.govdocs.SyntheticGovDocs;
+import org.opf_labs.fmts.corpora.govdocs.SyntheticGovDocs.Format;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DiscoveryTest {
+
+    private static final String[] MAGIC = {"255044462D312E340A25E2E3CFD30A", "47494638396", "89504E470D0A1A0A",
+                                           "FFD8FFE000104A46494600", "504B0304", "D0CF11E0A1B11AE1"};
+
+    private File root;
+
+    private GovDocsCorpora corpus;
+
+    @Before
+    public void setUp() throws Exception {
+        root = File.createTempFile("discovery", "");
+        root.delete();
+        SyntheticGovDocs.generator(2, 300).seed(7L).sizes(32, 256).format(Format.PDF, 1).format(Format.GIF, 1)
+                        .format(Format.PNG, 1).format(Format.JPEG, 1).format(Format.ZIP, 1).format(Format.DOC, 1)
+                        .build().writeZips(root);
+        corpus = GovDocs.newInstance(root, null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void testDiscoverMagic() throws Exception {
+        Discovery discovery = new Discovery();
+        discovery.addAll(corpus.items());
+        assertEquals(600, discovery.getCount());
+        assertMagic(discovery.signatures(20, 2));
+    }
+
+    @Test
+    public void testDiscoverBounded() throws Exception {
+        //Far fewer nodes than the items need, so the trie is pruned many times
+        Discovery discovery = new Discovery(16, 100);
+        discovery.addAll(corpus.items());
+        assertMagic(discovery.signatures(20, 2));
+    }
+
+    @Test
+    public void testDiscoverNested() throws Exception {
+        Discovery discovery = new Discovery();
+        Random random = new Random(7L);
+        for (int i = 0; i < 100; i++) {
+            add(discovery, "AAAB xyzw".getBytes("US-ASCII"));
+            add(discovery, "AAAC xyzw".getBytes("US-ASCII"));
+            byte[] item = new byte[9];
+            random.nextBytes(item);
+            System.arraycopy("AAA".getBytes("US-ASCII"), 0, item, 0, 3);
+            //Not covered by either of the longer prefixes, so only by the shared one
+            item[3] = (byte) ((i % 2) == 0 ? 'B' : 'C');
+            item[4] = 'X';
+            add(discovery, item);
+        }
+        List<Signature> signatures = discovery.signatures(100, 2);
+        Map<String, Integer> discovered = new HashMap<String, Integer>();
+        for (Signature signature : signatures) {
+            discovered.put(signature.getFrontBlock().pattern.get(0).getAscii(),
+                           signature.getGeneral().getNumberOfFiles());
+        }
+        assertEquals(3, discovered.size());
+        assertEquals(Integer.valueOf(300), discovered.get("AAA"));
+        assertEquals(Integer.valueOf(100), discovered.get("AAAB xyzw"));
+        assertEquals(Integer.valueOf(100), discovered.get("AAAC xyzw"));
+    }
+
+    private static void add(Discovery discovery, byte[] item) {
+        discovery.add(item, item.length);
+    }
+
+    private static void assertMagic(List<Signature> signatures) {
+        Set<String> discovered = new HashSet<String>();
+        int previous = Integer.MAX_VALUE;
+        for (Signature signature : signatures) {
+            assertEquals(1, signature.getFrontBlock().pattern.size());
+            discovered.add(signature.getFrontBlock().pattern.get(0).getBytes());
+            assertTrue(signature.getGeneral().getNumberOfFiles() <= previous);
+            previous = signature.getGeneral().getNumberOfFiles();
+        }
+        assertEquals(MAGIC.length, discovered.size());
+        for (String magic : MAGIC) {
+            boolean found = false;
+            for (String prefix : discovered) {
+                found |= prefix.startsWith(magic);
+            }
+            assertTrue("Expected a signature starting with " + magic + " in " + discovered, found);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.BytePattern;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class IntersectionTest {
+
+    @Test
+    public void testMatchesByteByByte() {
+        Random random = new Random(42);
+        //Not a multiple of the lane or word size, so the leftover bytes are compared too
+        int size = 203;
+        byte[] first = new byte[size];
+        random.nextBytes(first);
+        boolean[] expected = new boolean[size];
+        Intersection intersection = new Intersection(size);
+        byte[] buffer = new byte[size];
+        ByteBuffer lanes = Intersection.lanes(buffer);
+        for (int file = 0; file < 20; file++) {
+            System.arraycopy(first, 0, buffer, 0, size);
+            int length = file == 7 ? 150 : size;
+            for (int change = 0; change < 3; change++) {
+                int location = random.nextInt(size);
+                buffer[location] ^= 1 << random.nextInt(8);
+                expected[location] |= buffer[location] != first[location];
+            }
+            for (int i = length; i < size; i++) {
+                expected[i] = true;
+            }
+            intersection.add(lanes, length);
+        }
+
+        List<BytePattern> patterns = new ArrayList<BytePattern>();
+        intersection.addPatterns(patterns);
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (expected[i]) {
+                continue;
+            }
+            BytePattern pattern = patterns.get(next++);
+            assertEquals(i, pattern.getOffset());
+            int end = i + pattern.getPattern().length;
+            assertArrayEquals(Arrays.copyOfRange(first, i, end), pattern.getPattern());
+            assertEquals(true, end == size || expected[end]);
+            i = end;
+        }
+        assertEquals(next, patterns.size());
+    }
+
+    @Test
+    public void testRelearnKeepsPatterns() {
+        List<BytePattern> learned = new ArrayList<BytePattern>();
+        learned.add(new BytePattern(0, new byte[]{'%', 'P', 'D', 'F'}));
+        learned.add(new BytePattern(64, new byte[]{1, 2, 3}));
+        Intersection intersection = new Intersection(128, learned);
+        byte[] file = new byte[128];
+        System.arraycopy(new byte[]{'%', 'P', 'D', 'F'}, 0, file, 0, 4);
+        System.arraycopy(new byte[]{1, 2, 4}, 0, file, 64, 3);
+        intersection.add(Intersection.lanes(file), file.length);
+
+        List<BytePattern> patterns = new ArrayList<BytePattern>();
+        intersection.addPatterns(patterns);
+        assertEquals(2, patterns.size());
+        assertEquals(0, patterns.get(0).getOffset());
+        assertArrayEquals(new byte[]{'%', 'P', 'D', 'F'}, patterns.get(0).getPattern());
+        assertEquals(64, patterns.get(1).getOffset());
+        assertArrayEquals(new byte[]{1, 2}, patterns.get(1).getPattern());
+    }
+}
@@ -0,0 +1,118 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.BytePattern;
+import dk.statsbiblioteket.percipio.datastructures.Score;
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SignatureLibraryTest {
+
+    private Marshaller marshaller;
+
+    private File folder;
+
+    @Before
+    public void setUp() throws Exception {
+        marshaller = JAXBContext.newInstance(Signature.class).createMarshaller();
+        folder = File.createTempFile("signatures", "");
+        folder.delete();
+        folder.mkdir();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        File gif = write("gif.sig", "GIF", "GIF89a");
+        write("notes.txt", "Not a signature", "");
+        SignatureLibrary library = new SignatureLibrary(folder, Score.UNBOUNDED);
+        SignatureMatcher first = library.getMatcher();
+        assertEquals(1, first.getSignatures().size());
+        assertFalse(library.check());
+        assertSame(first, library.getMatcher());
+
+        write("png.xml", "PNG", "\u0089PNG");
+        assertTrue(library.check());
+        assertEquals(2, library.getMatcher().getSignatures().size());
+        //A matcher already taken is not changed by a reload
+        assertEquals(1, first.getSignatures().size());
+
+        write("gif.sig", "GIF 87", "GIF87a");
+        gif.setLastModified(gif.lastModified() + 2000);
+        assertTrue(library.check());
+        assertEquals("GIF 87", library.getMatcher().getSignatures().get(0).getInfo().getFileType());
+
+        gif.delete();
+        assertTrue(library.check());
+        assertEquals(1, library.getMatcher().getSignatures().size());
+        assertEquals("PNG", library.getMatcher().getSignatures().get(0).getInfo().getFileType());
+    }
+
+    @Test
+    public void testBrokenSignatureKept() throws Exception {
+        File gif = write("gif.sig", "GIF", "GIF89a");
+        SignatureLibrary library = new SignatureLibrary(folder, Score.UNBOUNDED);
+        FileUtils.writeStringToFile(gif, "<TrID><Info>");
+        gif.setLastModified(gif.lastModified() + 2000);
+        library.check();
+        assertEquals(1, library.getMatcher().getSignatures().size());
+        assertEquals("GIF", library.getMatcher().getSignatures().get(0).getInfo().getFileType());
+    }
+
+    @Test
+    public void testInvalidSignatureKept() throws Exception {
+        File gif = write("gif.sig", "GIF", "GIF89a");
+        SignatureLibrary library = new SignatureLibrary(folder, Score.UNBOUNDED);
+        //Well formed, but the pattern has no bytes
+        FileUtils.writeStringToFile(gif, "<TrID><Info><FileType>Broken</FileType></Info><FrontBlock><Pattern><Pos>0</Pos>"
+                                         + "</Pattern></FrontBlock></TrID>");
+        gif.setLastModified(gif.lastModified() + 2000);
+        library.check();
+        assertFalse(library.check());
+        assertEquals(1, library.getMatcher().getSignatures().size());
+        assertEquals("GIF", library.getMatcher().getSignatures().get(0).getInfo().getFileType());
+    }
+
+    @Test
+    public void testPolling() throws Exception {
+        SignatureLibrary library = new SignatureLibrary(folder, Score.UNBOUNDED);
+        assertEquals(0, library.getMatcher().getSignatures().size());
+        library.start(10, TimeUnit.MILLISECONDS);
+        try {
+            write("gif.sig", "GIF", "GIF89a");
+            long deadline = System.currentTimeMillis() + 10000;
+            while (library.getMatcher().getSignatures().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, library.getMatcher().getSignatures().size());
+        } finally {
+            library.stop();
+        }
+    }
+
+    private File write(String name, String fileType, String magic) throws Exception {
+        Signature signature = new Signature();
+        signature.getInfo().setFileType(fileType);
+        signature.getGeneral().setNumberOfFiles(1);
+        signature.getFrontBlock().pattern.add(new BytePattern(0, magic.getBytes("ISO-8859-1")));
+        File file = new File(folder, name);
+        marshaller.marshal(signature, file);
+        return file;
+    }
+}
@@ -0,0 +1,143 @@
+package dk.statsbiblioteket.percipio;
+
+import dk.statsbiblioteket.percipio.datastructures.BytePattern;
+import dk.statsbiblioteket.percipio.datastructures.Signature;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SignaturePackTest {
+
+    private Marshaller marshaller;
+
+    private File pack;
+
+    @Before
+    public void setUp() throws Exception {
+        marshaller = JAXBContext.newInstance(Signature.class).createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        pack = File.createTempFile("signatures", ".pack");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pack.delete();
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<Signature> signatures = new ArrayList<Signature>();
+        signatures.add(new Brain().learn(new File("src/test/resources/pdf").listFiles()));
+
+        //A signature with every optional part, and none of the dated ones
+        Signature ranged = new Signature();
+        ranged.getInfo().setFileType("Ranged \u00e6\u00f8\u00e5");
+        ranged.getGeneral().setNumberOfFiles(7);
+        ranged.getGeneral().setBlockSize(64);
+        ranged.getFrontBlock().pattern.add(new BytePattern(3, new byte[]{1, 2, 3}, 5));
+        ranged.getEndBlock().pattern.add(new BytePattern(60, new byte[]{(byte) 0xFF}));
+        signatures.add(ranged);
+        signatures.add(new Signature());
+
+        SignaturePack.write(signatures, pack);
+        List<Signature> read = SignaturePack.read(pack);
+        assertEquals(signatures.size(), read.size());
+        for (int i = 0; i < signatures.size(); i++) {
+            assertEquals(marshal(signatures.get(i)), marshal(read.get(i)));
+        }
+    }
+
+    @Test
+    public void testScoresUnchanged() throws Exception {
+        List<File> pdffiles = Arrays.asList(new File("src/test/resources/pdf").listFiles());
+        List<Signature> signatures = Arrays.asList(new Brain().learn(pdffiles));
+        SignaturePack.write(signatures, pack);
+
+        SignatureMatcher xml = new SignatureMatcher(signatures);
+        SignatureMatcher packed = new SignatureMatcher(SignaturePack.read(pack));
+        for (File file : pdffiles) {
+            assertEquals(xml.score(file).getTotal(), packed.score(file).getTotal());
+        }
+    }
+
+    @Test
+    public void testOtherVersion() throws Exception {
+        SignaturePack.write(new ArrayList<Signature>(), pack);
+        byte[] bytes = FileUtils.readFileToByteArray(pack);
+        bytes[7] = SignaturePack.VERSION + 1;
+        FileUtils.writeByteArrayToFile(pack, bytes);
+        assertRejected("version " + (SignaturePack.VERSION + 1));
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        SignaturePack.write(Arrays.asList(new Brain().learn(new File("src/test/resources/pdf").listFiles())), pack);
+        byte[] bytes = FileUtils.readFileToByteArray(pack);
+        FileUtils.writeByteArrayToFile(pack, Arrays.copyOf(bytes, bytes.length / 2));
+        assertRejected("truncated");
+    }
+
+    @Test
+    public void testNotAPack() throws Exception {
+        FileUtils.writeStringToFile(pack, "<TrID/>");
+        assertRejected("not a signature pack");
+    }
+
+    @Test
+    public void testIsPack() throws Exception {
+        SignaturePack.write(new ArrayList<Signature>(), pack);
+        assertTrue(SignaturePack.isPack(pack));
+        FileUtils.writeStringToFile(pack, "<TrID/>");
+        assertFalse(SignaturePack.isPack(pack));
+        FileUtils.writeStringToFile(pack, "");
+        assertFalse(SignaturePack.isPack(pack));
+    }
+
+    @Test
+    public void testParseSignatures() throws Exception {
+        Signature signature = new Brain().learn(new File("src/test/resources/pdf").listFiles());
+        Unmarshaller unmarshaller = JAXBContext.newInstance(Signature.class).createUnmarshaller();
+
+        SignaturePack.write(Arrays.asList(signature), pack);
+        List<Signature> packed = Percipio.parseSignatures(unmarshaller, pack.getPath());
+        assertEquals(1, packed.size());
+        assertEquals(marshal(signature), marshal(packed.get(0)));
+
+        //A single XML signature, as sniff has always taken
+        marshaller.marshal(signature, pack);
+        List<Signature> single = Percipio.parseSignatures(unmarshaller, pack.getPath());
+        assertEquals(1, single.size());
+        assertEquals(marshal(signature), marshal(single.get(0)));
+    }
+
+    private void assertRejected(String reason) {
+        try {
+            SignaturePack.read(pack);
+            fail("Expected the pack to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(reason));
+        }
+    }
+
+    private String marshal(Signature signature) throws Exception {
+        StringWriter writer = new StringWriter();
+        marshaller.marshal(signature, writer);
+        return writer.toString();
+    }
+}
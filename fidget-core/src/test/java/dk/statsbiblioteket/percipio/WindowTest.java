@@ -0,0 +1,112 @@
+package dk.statsbiblioteket.percipio;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class WindowTest {
+
+    @Test
+    public void testStreamMatchesFile() throws Exception {
+        Random random = new Random(42);
+        int[][] sizes = {{16, 16}, {16, 40}, {40, 16}, {0, 16}, {16, 0}, {1, 1}};
+        for (int length : new int[]{0, 1, 15, 16, 17, 31, 32, 33, 50, 56, 57, 100, 1000}) {
+            byte[] content = new byte[length];
+            random.nextBytes(content);
+            File file = File.createTempFile("percipio", ".bin");
+            file.deleteOnExit();
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(content);
+            out.close();
+
+            for (int[] size : sizes) {
+                Window fromFile = new Window(size[0], size[1]);
+                fromFile.read(file);
+                Window fromStream = new Window(size[0], size[1]);
+                for (long expected : new long[]{-1, length}) {
+                    //Read several times into the same window, to see that nothing is left over, and check each read,
+                    //as only a stream that skips takes the skip past the middle
+                    InputStream[] streams = {new ByteArrayInputStream(content),
+                                             new NoSkipInputStream(new ByteArrayInputStream(content)),
+                                             new ByteArrayInputStream(content)};
+                    for (int i = 0; i < streams.length; i++) {
+                        fromStream.read(streams[i], expected);
+                        String message = "length " + length + ", window " + Arrays.toString(size) + ", expected "
+                                         + expected + ", read " + i;
+                        assertSameContent(message, fromFile, fromStream);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSkipsMiddle() throws Exception {
+        byte[] content = new byte[1000];
+        new Random(42).nextBytes(content);
+        Window window = new Window(16, 32);
+        CountingInputStream in = new CountingInputStream(new ByteArrayInputStream(content));
+        window.read(in, content.length);
+        assertEquals(1000 - 16 - 32, in.skipped);
+        assertEquals(1000, window.getLength());
+        assertArrayEquals(valid(content, 0, 16), valid(window.getHead(), 0, 16));
+        assertArrayEquals(valid(content, 1000 - 32, 1000), window.getTail());
+    }
+
+    private static void assertSameContent(String message, Window fromFile, Window fromStream) {
+        assertEquals(message, fromFile.getLength(), fromStream.getLength());
+        assertEquals(message, fromFile.getHeadLength(), fromStream.getHeadLength());
+        assertEquals(message, fromFile.getTailLength(), fromStream.getTailLength());
+        assertArrayEquals(message, valid(fromFile.getHead(), 0, fromFile.getHeadLength()),
+                          valid(fromStream.getHead(), 0, fromStream.getHeadLength()));
+        int tailStart = fromFile.getTail().length - fromFile.getTailLength();
+        assertArrayEquals(message, valid(fromFile.getTail(), tailStart, fromFile.getTail().length),
+                          valid(fromStream.getTail(), tailStart, fromStream.getTail().length));
+    }
+
+    private static byte[] valid(byte[] buffer, int from, int to) {
+        return Arrays.copyOfRange(buffer, from, to);
+    }
+
+    /**
+     * A stream that counts the bytes skipped
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        long skipped = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long count = super.skip(n);
+            skipped += count;
+            return count;
+        }
+    }
+
+    /**
+     * A stream that never skips, like some decompressing streams
+     */
+    private static class NoSkipInputStream extends FilterInputStream {
+        NoSkipInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public long skip(long n) {
+            return 0;
+        }
+    }
+}
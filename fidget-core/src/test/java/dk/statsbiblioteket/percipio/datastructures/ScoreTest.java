@@ -0,0 +1,57 @@
+package dk.statsbiblioteket.percipio.datastructures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ScoreTest {
+
+    @Test
+    public void testTiesAreKept() {
+        Signature first = new Signature();
+        Signature second = new Signature();
+        Signature third = new Signature();
+        Score score = new Score();
+        score.add(5, first);
+        score.add(7, second);
+        score.add(5, third);
+
+        List<Score.Pair<Integer, Signature>> scoreboard = new ArrayList<Score.Pair<Integer, Signature>>(score.getScoreboard());
+        assertEquals(3, scoreboard.size());
+        assertSame(second, scoreboard.get(0).getB());
+        assertSame(first, scoreboard.get(1).getB());
+        assertSame(third, scoreboard.get(2).getB());
+        assertEquals(17, score.getTotal());
+    }
+
+    @Test
+    public void testLimit() {
+        Random random = new Random(42);
+        int[] values = new int[500];
+        Signature[] signatures = new Signature[values.length];
+        Score all = new Score();
+        Score best = new Score(10);
+        for (int i = 0; i < values.length; i++) {
+            //Few distinct values, so there are plenty of ties
+            values[i] = random.nextInt(40) - 20;
+            signatures[i] = new Signature();
+            all.add(values[i], signatures[i]);
+            best.add(values[i], signatures[i]);
+        }
+
+        List<Score.Pair<Integer, Signature>> expected = new ArrayList<Score.Pair<Integer, Signature>>(all.getScoreboard());
+        List<Score.Pair<Integer, Signature>> kept = new ArrayList<Score.Pair<Integer, Signature>>(best.getScoreboard());
+        assertEquals(values.length, expected.size());
+        assertEquals(10, kept.size());
+        for (int i = 0; i < kept.size(); i++) {
+            assertEquals(expected.get(i).getA(), kept.get(i).getA());
+            assertSame(expected.get(i).getB(), kept.get(i).getB());
+        }
+        assertEquals(all.getTotal(), best.getTotal());
+    }
+}
@@ -24,8 +24,11 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.opf_labs.fmts.corpora.govdocs.GovDocsTest;
+import org.opf_labs.fmts.fidget.MimeTypesCacheTest;
 import org.opf_labs.fmts.fidget.OldTikaSigTesterTest;
+import org.opf_labs.fmts.fidget.ResultSinksTest;
 import org.opf_labs.fmts.fidget.TikaResourceHelperTest;
+import org.opf_labs.fmts.fidget.TikaSigTesterTest;
 import org.opf_labs.fmts.fidget.mimeinfo.MimeInfoUtilsTest;
 
 /**
@@ -38,7 +41,7 @@ import org.opf_labs.fmts.fidget.mimeinfo.MimeInfoUtilsTest;
  * Created 2 Nov 2012:11:54:06
  */
 @RunWith(Suite.class)
-@SuiteClasses({ OldTikaSigTesterTest.class, TikaResourceHelperTest.class, MimeInfoUtilsTest.class, GovDocsTest.class })
+@SuiteClasses({ OldTikaSigTesterTest.class, TikaResourceHelperTest.class, MimeInfoUtilsTest.class, GovDocsTest.class, ResultSinksTest.class, TikaSigTesterTest.class, MimeTypesCacheTest.class })
 public class AllFidgetTests {
 	private static final String PERCIPIO_XML = "percipio.pdf.xml";
 	private static final String TIKA_CUSTOM = "custom-mimetypes.xml";
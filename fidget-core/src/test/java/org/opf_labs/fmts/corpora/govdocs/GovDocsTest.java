@@ -18,14 +18,28 @@
  */
 package org.opf_labs.fmts.corpora.govdocs;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 
 import org.junit.Test;
 import org.opf_labs.fmts.AllFidgetTests;
+import org.opf_labs.fmts.corpora.CorpusItem;
+import org.opf_labs.fmts.corpora.CorpusIterator;
 
 /**
  * TODO JavaDoc for GovDocsTest.</p>
@@ -112,4 +126,202 @@ public class GovDocsTest {
 		assertFalse("GovDocsZipped.isZip() == true for dir based test directory??", GovDocs.isZip(AllFidgetTests.getGovDocsDir()));
 	}
 
+	/**
+	 * Test method for {@link org.opf_labs.fmts.corpora.govdocs.GovDocsZipped#itemNumbers()}.
+	 * The test zip 001.zip holds items numbered for folder 000, they can't be looked up so aren't returned.
+	 * @throws URISyntaxException when resource lookup fails
+	 * @throws IOException when an item can't be read
+	 */
+	@Test
+	public final void testZippedItemNumbers() throws URISyntaxException, IOException {
+		GovDocsZipped govDocs = (GovDocsZipped) GovDocs.newInstance(AllFidgetTests.getGovDocsZip());
+		List<Integer> numbers = new ArrayList<Integer>();
+		Iterator<Integer> items = govDocs.itemNumbers();
+		while (items.hasNext()) {
+			Integer number = items.next();
+			InputStream item = govDocs.getItem(number.intValue());
+			item.close();
+			assertEquals(number.intValue(), Integer.parseInt(FilenameUtils.getBaseName(govDocs.getItemName(number.intValue()))));
+			numbers.add(number);
+		}
+		assertEquals(Arrays.asList(Integer.valueOf(62099), Integer.valueOf(62554), Integer.valueOf(62576),
+				Integer.valueOf(62669), Integer.valueOf(999028), Integer.valueOf(999044), Integer.valueOf(999997),
+				Integer.valueOf(999999)), numbers);
+	}
+
+	/**
+	 * Test method for {@link org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora#items()}.
+	 * @throws URISyntaxException when resource lookup fails
+	 * @throws IOException when an item can't be read
+	 */
+	@Test
+	public final void testItems() throws URISyntaxException, IOException {
+		List<String> expected = Arrays.asList("062099.pdf", "062554.kml", "062576.html", "062669.gif",
+				"999028.csv", "999044.html", "999997.html", "999999.pdf");
+		GovDocsCorpora zipped = GovDocs.newInstance(AllFidgetTests.getGovDocsZip());
+		assertEquals(expected, itemNames(zipped, zipped.items()));
+		assertEquals("062/062099.pdf", zipped.items().iterator().next().getName());
+		GovDocsCorpora dirs = GovDocs.newInstance(AllFidgetTests.getGovDocsDir());
+		assertEquals(expected, itemNames(dirs, dirs.items()));
+	}
+
+	/**
+	 * Test method for {@link org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora#openItems(int, int)}.
+	 * A traversal closed part way has no more items.
+	 * @throws URISyntaxException when resource lookup fails
+	 * @throws IOException when the traversal can't be closed
+	 */
+	@Test
+	public final void testOpenItemsClosedEarly() throws URISyntaxException, IOException {
+		for (File root : new File[] { AllFidgetTests.getGovDocsZip(), AllFidgetTests.getGovDocsDir() }) {
+			CorpusIterator items = GovDocs.newInstance(root).openItems(0, 999);
+			assertTrue(items.hasNext());
+			items.next();
+			items.close();
+			assertFalse(items.hasNext());
+		}
+	}
+
+	/**
+	 * Test method for {@link org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora#items(int, int)}.
+	 * @throws URISyntaxException when resource lookup fails
+	 * @throws IOException when an item can't be read
+	 */
+	@Test
+	public final void testItemsFolderRange() throws URISyntaxException, IOException {
+		List<String> expected = Arrays.asList("062099.pdf", "062554.kml", "062576.html", "062669.gif");
+		GovDocsCorpora zipped = GovDocs.newInstance(AllFidgetTests.getGovDocsZip());
+		assertEquals(expected, itemNames(zipped, zipped.items(62, 62)));
+		GovDocsCorpora dirs = GovDocs.newInstance(AllFidgetTests.getGovDocsDir());
+		assertEquals(expected, itemNames(dirs, dirs.items(0, 998)));
+		assertTrue(itemNames(dirs, dirs.items(63, 998)).isEmpty());
+	}
+
+	/**
+	 * @return the file names of the items, after checking each item has the
+	 *         same name and size as when looked up by number
+	 */
+	private static List<String> itemNames(GovDocsCorpora corpus, Iterable<CorpusItem> items) throws IOException {
+		List<String> names = new ArrayList<String>();
+		for (CorpusItem item : items) {
+			int number = Integer.parseInt(FilenameUtils.getBaseName(item.getName()));
+			assertEquals(corpus.getItemName(number), item.getName());
+			InputStream stream = item.getStream();
+			try {
+				assertEquals(item.getSize(), IOUtils.toByteArray(stream).length);
+			} finally {
+				stream.close();
+			}
+			names.add(FilenameUtils.getName(item.getName()));
+		}
+		return names;
+	}
+
+	/**
+	 * Test method for {@link org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora#getItem(int)}.
+	 * @throws URISyntaxException when resource lookup fails
+	 */
+	@Test(expected = FileNotFoundException.class)
+	public final void testZippedMissingItem() throws URISyntaxException, FileNotFoundException {
+		GovDocs.newInstance(AllFidgetTests.getGovDocsZip()).getItem(62100);
+	}
+
+	/**
+	 * Test method for {@link org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora#getItemName(int)}.
+	 * @throws URISyntaxException when resource lookup fails
+	 * @throws FileNotFoundException when an item is missing
+	 */
+	@Test
+	public final void testDirItemNames() throws URISyntaxException, FileNotFoundException {
+		GovDocsCorpora govDocs = GovDocs.newInstance(AllFidgetTests.getGovDocsDir());
+		assertEquals("062099.pdf", govDocs.getItemName(62099));
+		assertEquals("062669.gif", govDocs.getItemName(62, 669));
+		assertEquals("999999.pdf", govDocs.getItemName(999999));
+	}
+
+	/**
+	 * Test method for {@link org.opf_labs.fmts.corpora.govdocs.GovDocsCorpora#getItem(int)}, folder 000 doesn't exist.
+	 * @throws URISyntaxException when resource lookup fails
+	 */
+	@Test(expected = FileNotFoundException.class)
+	public final void testDirMissingFolder() throws URISyntaxException, FileNotFoundException {
+		GovDocs.newInstance(AllFidgetTests.getGovDocsDir()).getItem(1);
+	}
+
+	/**
+	 * Test method for {@link org.opf_labs.fmts.corpora.govdocs.GovDocs#newInstance(java.io.File, java.io.File)}.
+	 * Details read back from the manifest should match a full scan, and a corrupt manifest should be ignored.
+	 * @throws URISyntaxException when resource lookup fails
+	 * @throws IOException when the manifest can't be created
+	 */
+	@Test
+	public final void testManifest() throws URISyntaxException, IOException {
+		for (File root : new File[] { AllFidgetTests.getGovDocsDir(), AllFidgetTests.getGovDocsZip() }) {
+			File manifest = File.createTempFile("govdocs", ".manifest");
+			manifest.delete();
+			GovDocsCorpora scanned = GovDocs.newInstance(root, null);
+			GovDocsCorpora first = GovDocs.newInstance(root, manifest);
+			assertTrue("Expected a manifest to be written", manifest.isFile());
+			GovDocsCorpora cached = GovDocs.newInstance(root, manifest);
+			assertEquals(scanned, first);
+			assertEquals(scanned, cached);
+			assertEquals(scanned.getExtensions(), cached.getExtensions());
+
+			FileUtils.writeStringToFile(manifest, "govdocs-manifest 1\n001\tnot\ta\tnumber\t!\n");
+			assertEquals(scanned, GovDocs.newInstance(root, manifest));
+			manifest.delete();
+		}
+	}
+
+	/**
+	 * Test method for {@link org.opf_labs.fmts.corpora.govdocs.SyntheticGovDocs}.
+	 * Both layouts of a synthetic corpus should read back as the same items, within the size bounds.
+	 * @throws IOException when the corpus can't be written
+	 */
+	@Test
+	public final void testSynthetic() throws IOException {
+		SyntheticGovDocs synthetic = SyntheticGovDocs.generator(3, 20).seed(42L).sizes(16, 4096).build();
+		File root = File.createTempFile("synthetic", "");
+		root.delete();
+		try {
+			File dirs = new File(root, "dir");
+			File zips = new File(root, "zip");
+			synthetic.writeDirectories(dirs);
+			synthetic.writeZips(zips);
+			GovDocsCorpora fromDirs = GovDocs.newInstance(dirs, null);
+			GovDocsCorpora fromZips = GovDocs.newInstance(zips, null);
+			assertTrue(fromDirs instanceof GovDocsDirectories);
+			assertTrue(fromZips instanceof GovDocsZipped);
+			assertEquals(synthetic.getItemCount(), fromDirs.getCount());
+			assertEquals(fromDirs.getCount(), fromZips.getCount());
+			assertEquals(fromDirs.getSize(), fromZips.getSize());
+
+			Iterator<CorpusItem> zipItems = fromZips.items().iterator();
+			for (CorpusItem item : fromDirs.items()) {
+				CorpusItem zipItem = zipItems.next();
+				assertEquals(item.getName(), FilenameUtils.getName(zipItem.getName()));
+				assertEquals(item.getSize(), zipItem.getSize());
+				assertTrue(item.getSize() >= 16 && item.getSize() <= 4096);
+				InputStream dirStream = item.getStream();
+				InputStream zipStream = zipItem.getStream();
+				try {
+					assertTrue(IOUtils.contentEquals(dirStream, zipStream));
+				} finally {
+					dirStream.close();
+					zipStream.close();
+				}
+			}
+			assertFalse(zipItems.hasNext());
+
+			// The same seed always writes the same corpus
+			File again = new File(root, "again");
+			SyntheticGovDocs.generator(3, 20).seed(42L).sizes(16, 4096).build().writeDirectories(again);
+			assertEquals(fromDirs, GovDocs.newInstance(again, null));
+			String name = "002/" + fromDirs.getItemName(synthetic.getItemNumbers(2)[5]);
+			assertTrue(FileUtils.contentEquals(new File(dirs, name), new File(again, name)));
+		} finally {
+			FileUtils.deleteDirectory(root);
+		}
+	}
+
 }
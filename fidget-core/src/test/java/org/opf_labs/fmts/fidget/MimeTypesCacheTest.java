@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.fidget;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.tika.mime.MimeTypeException;
+import org.apache.tika.mime.MimeTypes;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MimeTypesCache}.
+ * 
+ * @version 0.1
+ */
+public class MimeTypesCacheTest {
+	private static final String MIME_INFO_START = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><mime-info>";
+	private static final String MIME_INFO_END = "</mime-info>";
+
+	/**
+	 * Test method for {@link MimeTypesCache#fromStreams(InputStream...)}.
+	 * 
+	 * @throws IOException
+	 * @throws MimeTypeException
+	 */
+	@Test
+	public final void testSameDefinitionsShared() throws IOException, MimeTypeException {
+		MimeTypes first = MimeTypesCache.fromStreams(definition("application/x-fidget-cache-test"));
+		MimeTypes second = MimeTypesCache.fromStreams(definition("application/x-fidget-cache-test"));
+		assertSame(first, second);
+		assertTrue(MimeTypesCache.size() <= MimeTypesCache.CACHED_REPOSITORIES);
+	}
+
+	/**
+	 * Test method for {@link MimeTypesCache#fromStreams(InputStream...)}.
+	 * 
+	 * @throws IOException
+	 * @throws MimeTypeException
+	 */
+	@Test
+	public final void testDifferentDefinitionsNotShared() throws IOException, MimeTypeException {
+		MimeTypes first = MimeTypesCache.fromStreams(definition("application/x-fidget-cache-one"));
+		MimeTypes second = MimeTypesCache.fromStreams(definition("application/x-fidget-cache-two"));
+		assertNotSame(first, second);
+	}
+
+	private static InputStream definition(final String type) {
+		return new ByteArrayInputStream((MIME_INFO_START + "<mime-type type=\"" + type + "\"/>" + MIME_INFO_END).getBytes());
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.fidget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.opf_labs.fmts.AllFidgetTests;
+
+/**
+ * Tests for the standard {@link ResultSink}s in {@link ResultSinks}.
+ * 
+ * @version 0.1
+ */
+public class ResultSinksTest {
+	private static final TikaSigTester TESTER = TikaSigTester.vanilla();
+
+	/**
+	 * Test method for {@link ResultSinks#tsv(java.io.Writer)}.
+	 * 
+	 * @throws IOException
+	 * @throws URISyntaxException
+	 */
+	@Test
+	public final void testTsv() throws IOException, URISyntaxException {
+		StringWriter writer = new StringWriter();
+		List<File> files = corpusFiles();
+		ResultSink sink = ResultSinks.tsv(writer);
+		for (File file : files) {
+			sink.add(TESTER.identify(file));
+		}
+		sink.close();
+		String[] lines = writer.toString().split("\n");
+		assertEquals("Expected a header and a line per file", files.size() + 1,
+				lines.length);
+		assertEquals(ResultSinks.TSV_HEADER, lines[0]);
+		for (int line = 1; line < lines.length; line++) {
+			assertEquals("Expected 4 columns: " + lines[line], 4,
+					lines[line].split("\t").length);
+		}
+	}
+
+	/**
+	 * Test method for {@link ResultSinks#jsonLines(java.io.Writer)}.
+	 * 
+	 * @throws IOException
+	 * @throws URISyntaxException
+	 */
+	@Test
+	public final void testJsonLines() throws IOException, URISyntaxException {
+		StringWriter writer = new StringWriter();
+		List<File> files = corpusFiles();
+		ResultSink sink = ResultSinks.jsonLines(writer);
+		for (File file : files) {
+			sink.add(TESTER.identify(file));
+		}
+		sink.close();
+		String[] lines = writer.toString().split("\n");
+		assertEquals(files.size(), lines.length);
+		for (String line : lines) {
+			assertTrue("Expected a JSON object: " + line,
+					line.startsWith("{\"location\":\"file:")
+							&& line.endsWith("}"));
+		}
+	}
+
+	/**
+	 * Test method for {@link ResultSinks#aggregator()}.
+	 * 
+	 * @throws IOException
+	 * @throws URISyntaxException
+	 */
+	@Test
+	public final void testAggregator() throws IOException, URISyntaxException {
+		List<File> files = corpusFiles();
+		ResultSinks.Aggregator aggregator = ResultSinks.aggregator();
+		for (File file : files) {
+			aggregator.add(TESTER.identify(file));
+		}
+		assertEquals(files.size(), aggregator.getCount());
+		int total = 0;
+		for (Integer count : aggregator.getCounts().values()) {
+			total += count.intValue();
+		}
+		assertEquals(files.size(), total);
+	}
+
+	private static List<File> corpusFiles() throws URISyntaxException {
+		return new ArrayList<File>(FileUtils.listFiles(
+				AllFidgetTests.getGovDocsDir(), null, true));
+	}
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2012 Andrew Jackson <Andrew.Jackson@bl.uk>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.opf_labs.fmts.fidget;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.mime.MediaType;
+import org.junit.Test;
+import org.opf_labs.fmts.AllFidgetTests;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Timer;
+
+/**
+ * Tests for {@link TikaSigTester} identification.
+ * 
+ * @version 0.1
+ */
+public class TikaSigTesterTest {
+	private static final TikaSigTester TESTER = TikaSigTester.vanilla();
+
+	/**
+	 * Test method for
+	 * {@link TikaSigTester#identify(java.util.Collection, int, ResultSink)}.
+	 * The parallel results should be the same as identifying one at a time.
+	 * 
+	 * @throws IOException
+	 * @throws URISyntaxException
+	 */
+	@Test
+	public final void testIdentifyParallel() throws IOException,
+			URISyntaxException {
+		List<File> files = new ArrayList<File>(FileUtils.listFiles(
+				AllFidgetTests.getGovDocsDir(), null, true));
+		// Identify each file several times over to keep the threads busy
+		List<File> repeated = new ArrayList<File>();
+		for (int i = 0; i < 20; i++) {
+			repeated.addAll(files);
+		}
+		List<IdentificationResult> results = new ArrayList<IdentificationResult>();
+		TESTER.identify(repeated, 4, ResultSinks.list(results));
+		assertEquals(repeated.size(), results.size());
+
+		Map<URI, IdentificationResult> expected = new HashMap<URI, IdentificationResult>();
+		for (File file : files) {
+			expected.put(file.toURI(), TESTER.identify(file));
+		}
+		for (IdentificationResult result : results) {
+			IdentificationResult single = expected.get(result.getLocation());
+			assertEquals(single.getHash64K(), result.getHash64K());
+			assertEquals(single.getMime(), result.getMime());
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link TikaSigTester#identify(java.util.Collection, int, ResultSink)}.
+	 * A runtime failure on a worker thread should reach the caller, rather
+	 * than the file being dropped.
+	 *
+	 * @throws IOException
+	 * @throws URISyntaxException
+	 */
+	@Test(expected = IllegalStateException.class)
+	public final void testIdentifyParallelSinkFails() throws IOException,
+			URISyntaxException {
+		List<File> files = new ArrayList<File>(FileUtils.listFiles(
+				AllFidgetTests.getGovDocsDir(), null, true));
+		TESTER.identify(files, 3, new ResultSink() {
+			@Override
+			public void add(IdentificationResult result) {
+				throw new IllegalStateException("Sink failed");
+			}
+
+			@Override
+			public void close() {
+				// Nothing to close
+			}
+		});
+	}
+
+	/**
+	 * Test method for {@link TikaSigTester#identify(java.io.InputStream)}.
+	 * The hash should cover the same bytes that Tika identified from, i.e.
+	 * the start of the stream.
+	 * 
+	 * @throws IOException
+	 * @throws URISyntaxException
+	 */
+	@Test
+	public final void testIdentifyStreamHash() throws IOException,
+			URISyntaxException {
+		for (File file : FileUtils.listFiles(AllFidgetTests.getGovDocsDir(),
+				null, true)) {
+			InputStream stream = new FileInputStream(file);
+			IdentificationResult result = TESTER.identify(stream);
+			stream.close();
+			stream = new FileInputStream(file);
+			String expected = TikaIdentifier.hash64K(stream);
+			stream.close();
+			assertEquals("Hash mismatch for " + file, expected,
+					result.getHash64K());
+			// 062099.pdf is really HTML, but 999999.pdf is a real PDF
+			if (file.getName().equals("999999.pdf")) {
+				assertEquals(MediaType.application("pdf"), result.getMime());
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link TikaSigTester#getPrefixLength()}.
+	 * 
+	 * @throws IOException
+	 * @throws URISyntaxException
+	 */
+	@Test
+	public final void testIdentifyPrefix() throws IOException,
+			URISyntaxException {
+		for (File file : FileUtils.listFiles(AllFidgetTests.getGovDocsDir(),
+				null, true)) {
+			IdentificationResult expected = TESTER.identify(file);
+			byte[] prefix = FileUtils.readFileToByteArray(file);
+			prefix = Arrays.copyOf(prefix, Math.min(prefix.length, TESTER.getPrefixLength()));
+			IdentificationResult result = TESTER.identify(new ByteArrayInputStream(prefix), file.toURI());
+			assertEquals(expected.getLocation(), result.getLocation());
+			assertEquals("Hash mismatch for " + file, expected.getHash64K(), result.getHash64K());
+			assertEquals("Type mismatch for " + file, expected.getMime(), result.getMime());
+		}
+	}
+
+	/**
+	 * Test that identification is timed, per stage.
+	 * 
+	 * @throws IOException
+	 * @throws URISyntaxException
+	 */
+	@Test
+	public final void testIdentifyMetrics() throws IOException,
+			URISyntaxException {
+		Timer identify = Metrics.newTimer(TikaIdentifier.class, "identify");
+		Timer hash = Metrics.newTimer(TikaIdentifier.class, "hash");
+		long identified = identify.count();
+		long hashed = hash.count();
+		Collection<File> files = FileUtils.listFiles(AllFidgetTests.getGovDocsDir(), null, true);
+		for (File file : files) {
+			assertTrue(TESTER.identify(file).getDurationNanos() >= 0);
+		}
+		assertTrue(identify.count() >= identified + files.size());
+		assertTrue(hash.count() >= hashed + files.size());
+	}
+}
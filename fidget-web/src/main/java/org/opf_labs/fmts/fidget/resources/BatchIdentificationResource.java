@@ -0,0 +1,272 @@
+/**
+ * Copyright (C) 2012 Carl Wilson <carl@openplanetsfoundation.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * 
+ */
+package org.opf_labs.fmts.fidget.resources;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.opf_labs.fmts.fidget.ResultSink;
+import org.opf_labs.fmts.fidget.ResultSinks;
+import org.opf_labs.fmts.fidget.TikaSigTester;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.sun.jersey.multipart.FormDataBodyPart;
+import com.sun.jersey.multipart.FormDataMultiPart;
+import com.yammer.metrics.annotation.Timed;
+
+/**
+ * JSON identification of many items in one request. The items are uploaded
+ * as the "file" parts of a multipart form, or as the entries of a zip, and
+ * one JSON IdentificationResult per item is streamed back per line (NDJSON)
+ * as soon as it's identified, so results arrive in no particular order.
+ * 
+ * Only the prefix of each item that identification needs is kept, and the
+ * items are identified in parallel on a shared executor, with a bounded
+ * number of prefixes waiting per request. Items are identified against the
+ * registered signature named by the signature parameter, or against the
+ * vanilla Tika signatures without it.
+ * 
+ * @version 0.1
+ */
+@Path("/identify")
+public class BatchIdentificationResource {
+	/** Media type for newline delimited JSON */
+	public static final String NDJSON = "application/x-ndjson";
+	private static final String ZIP = "application/zip";
+	private static final String FILE_FIELD = "file";
+	private static final String UPLOAD_SCHEME = "upload";
+	private static final String UNNAMED = "unnamed";
+	// Number of item prefixes waiting for identification per request
+	private static final int PENDING_ITEMS = 256;
+	private final TikaSigTester vanilla = TikaSigTester.vanilla();
+	private final SignatureRegistry signatures;
+	private final Executor executor;
+
+	/**
+	 * @param signatures
+	 *            the registry of uploaded signatures
+	 * @param executor
+	 *            the executor to identify items on
+	 */
+	public BatchIdentificationResource(final SignatureRegistry signatures,
+			final Executor executor) {
+		Preconditions.checkNotNull(signatures, "signatures==null");
+		Preconditions.checkNotNull(executor, "executor==null");
+		this.signatures = signatures;
+		this.executor = executor;
+	}
+
+	/**
+	 * @param signature
+	 *            the handle of a registered signature, or null for vanilla
+	 * @param form
+	 *            the form holding the items to identify as "file" parts
+	 * @return the stream of JSON results, one per line
+	 */
+	@Timed
+	@POST
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces(NDJSON)
+	public StreamingOutput identifyParts(
+			@QueryParam("signature") final String signature,
+			final FormDataMultiPart form) {
+		final TikaSigTester tester = getTester(signature);
+		final List<FormDataBodyPart> parts = form.getFields(FILE_FIELD);
+		if (parts == null) throw new WebApplicationException(Status.BAD_REQUEST);
+		return new StreamingOutput() {
+			@Override
+			public void write(OutputStream output) throws IOException {
+				Batch batch = new Batch(tester, output);
+				try {
+					for (FormDataBodyPart part : parts) {
+						InputStream item = part.getEntityAs(InputStream.class);
+						try {
+							batch.identify(part.getContentDisposition()
+									.getFileName(), item);
+						} finally {
+							item.close();
+						}
+					}
+				} finally {
+					batch.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * @param signature
+	 *            the handle of a registered signature, or null for vanilla
+	 * @param zip
+	 *            the zip holding the items to identify
+	 * @return the stream of JSON results, one per line
+	 */
+	@Timed
+	@POST
+	@Consumes(ZIP)
+	@Produces(NDJSON)
+	public StreamingOutput identifyZip(
+			@QueryParam("signature") final String signature,
+			final InputStream zip) {
+		final TikaSigTester tester = getTester(signature);
+		return new StreamingOutput() {
+			@Override
+			public void write(OutputStream output) throws IOException {
+				Batch batch = new Batch(tester, output);
+				try {
+					ZipInputStream entries = new ZipInputStream(zip);
+					for (ZipEntry entry = entries.getNextEntry(); entry != null; entry = entries
+							.getNextEntry()) {
+						if (!entry.isDirectory())
+							batch.identify(entry.getName(), entries);
+					}
+				} finally {
+					batch.close();
+				}
+			}
+		};
+	}
+
+	private TikaSigTester getTester(final String signature) {
+		if (signature == null) return this.vanilla;
+		TikaSigTester tester = this.signatures.getTester(signature);
+		if (tester == null) throw new WebApplicationException(Status.NOT_FOUND);
+		return tester;
+	}
+
+	/**
+	 * The items of a single request. Each item's prefix is read on the
+	 * request thread, then identified on the executor.
+	 */
+	private final class Batch {
+		private final TikaSigTester tester;
+		private final ResultSink sink;
+		private final Semaphore pending = new Semaphore(PENDING_ITEMS);
+		// RuntimeExceptions as well, as the executor would drop them silently
+		private volatile Exception failure;
+
+		Batch(final TikaSigTester tester, final OutputStream output) {
+			this.tester = tester;
+			this.sink = ResultSinks.jsonLines(new BufferedWriter(
+					new OutputStreamWriter(output, Charsets.UTF_8)));
+		}
+
+		void identify(final String name, final InputStream item)
+				throws IOException {
+			rethrowFailure();
+			final byte[] prefix = readPrefix(item, this.tester.getPrefixLength());
+			final URI location = location(name);
+			acquire(1);
+			try {
+				BatchIdentificationResource.this.executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							Batch.this.sink.add(Batch.this.tester.identify(
+									new ByteArrayInputStream(prefix), location));
+						} catch (IOException excep) {
+							// Most likely the client went away
+							Batch.this.failure = excep;
+						} catch (RuntimeException excep) {
+							Batch.this.failure = excep;
+						} finally {
+							Batch.this.pending.release();
+						}
+					}
+				});
+			} catch (RuntimeException excep) {
+				this.pending.release();
+				throw excep;
+			}
+		}
+
+		/**
+		 * Waits for all of the items to be identified, then closes the sink.
+		 * The first failure to identify or record an item is thrown instead.
+		 */
+		void close() throws IOException {
+			acquire(PENDING_ITEMS);
+			this.pending.release(PENDING_ITEMS);
+			rethrowFailure();
+			this.sink.close();
+		}
+
+		private void rethrowFailure() throws IOException {
+			Exception failed = this.failure;
+			if (failed == null) return;
+			if (failed instanceof IOException) throw (IOException) failed;
+			throw (RuntimeException) failed;
+		}
+
+		private void acquire(final int permits) throws InterruptedIOException {
+			try {
+				this.pending.acquire(permits);
+			} catch (InterruptedException excep) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException(
+						"Interrupted waiting for identification threads.");
+			}
+		}
+	}
+
+	private static URI location(final String name) {
+		try {
+			return new URI(UPLOAD_SCHEME, (name == null || name.isEmpty()) ? UNNAMED : name, null);
+		} catch (URISyntaxException excep) {
+			// Can't happen, the scheme and part are never empty
+			throw new IllegalStateException(excep);
+		}
+	}
+
+	private static byte[] readPrefix(final InputStream stream, final int length)
+			throws IOException {
+		byte[] buff = new byte[length];
+		int total = 0;
+		while (total < length) {
+			int read = stream.read(buff, total, length - total);
+			if (read < 0) break;
+			total += read;
+		}
+		return (total == length) ? buff : Arrays.copyOf(buff, total);
+	}
+}
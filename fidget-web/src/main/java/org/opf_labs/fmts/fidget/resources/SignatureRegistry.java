@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2012 Carl Wilson <carl@openplanetsfoundation.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * 
+ */
+package org.opf_labs.fmts.fidget.resources;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.tika.mime.MimeTypeException;
+import org.opf_labs.fmts.fidget.TikaSigTester;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Registry of uploaded signature files, so a signature is parsed once and then
+ * tested against as many data files as the user likes. A signature is
+ * registered under a handle, the SHA256 of the signature file, so uploading
+ * the same signature again gives the same handle without parsing it again.
+ * 
+ * Only the most recently used testers are kept. Once a handle's tester has
+ * been dropped the signature has to be registered again.
+ * 
+ * @version 0.1
+ */
+public final class SignatureRegistry {
+	/** The default number of signatures kept */
+	public static final int DEFAULT_CACHED_SIGNATURES = 32;
+	private final Cache<String, TikaSigTester> testers;
+
+	/**
+	 * @param cachedSignatures
+	 *            the maximum number of signatures to keep
+	 */
+	public SignatureRegistry(final int cachedSignatures) {
+		Preconditions.checkArgument(cachedSignatures > 0,
+				"cachedSignatures must be > 0");
+		this.testers = CacheBuilder.newBuilder()
+				.maximumSize(cachedSignatures).build();
+	}
+
+	/**
+	 * @param sigStream
+	 *            the stream containing the signature file, read to the end
+	 *            but not closed
+	 * @return the handle of the signature, for use with
+	 *         {@link #getTester(String)}
+	 * @throws IOException
+	 *             if the stream can not be read
+	 * @throws MimeTypeException
+	 *             if the signature is invalid
+	 */
+	public String register(final InputStream sigStream) throws IOException,
+			MimeTypeException {
+		final byte[] signature = IOUtils.toByteArray(sigStream);
+		final String handle = DigestUtils.sha256Hex(signature);
+		load(handle, signature);
+		return handle;
+	}
+
+	/**
+	 * Registers a signature and returns its tester in one step, for callers
+	 * that test a single data file. The tester can't have been dropped in
+	 * between, unlike looking the handle up afterwards.
+	 * 
+	 * @param sigStream
+	 *            the stream containing the signature file, read to the end
+	 *            but not closed
+	 * @return the tester for the signature, never null
+	 * @throws IOException
+	 *             if the stream can not be read
+	 * @throws MimeTypeException
+	 *             if the signature is invalid
+	 */
+	public TikaSigTester registerTester(final InputStream sigStream)
+			throws IOException, MimeTypeException {
+		final byte[] signature = IOUtils.toByteArray(sigStream);
+		return load(DigestUtils.sha256Hex(signature), signature);
+	}
+
+	private TikaSigTester load(final String handle, final byte[] signature)
+			throws IOException, MimeTypeException {
+		try {
+			// Concurrent uploads of a new signature wait for a single parse
+			return this.testers.get(handle, new Callable<TikaSigTester>() {
+				@Override
+				public TikaSigTester call() throws IOException,
+						MimeTypeException {
+					return TikaSigTester.streamsOnly(new ByteArrayInputStream(
+							signature));
+				}
+			});
+		} catch (ExecutionException excep) {
+			Throwables.propagateIfPossible(excep.getCause(), IOException.class,
+					MimeTypeException.class);
+			throw new IllegalStateException(excep.getCause());
+		} catch (UncheckedExecutionException excep) {
+			throw Throwables.propagate(excep.getCause());
+		}
+	}
+
+	/**
+	 * @param handle
+	 *            a handle returned by {@link #register(InputStream)}
+	 * @return the tester for the signature, or null if the handle is unknown
+	 *         or has been dropped from the registry
+	 */
+	public TikaSigTester getTester(final String handle) {
+		return this.testers.getIfPresent(handle);
+	}
+}
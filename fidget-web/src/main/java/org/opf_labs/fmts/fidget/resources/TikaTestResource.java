@@ -25,8 +25,11 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
 
 import org.apache.tika.mime.MimeTypeException;
 import org.opf_labs.fmts.fidget.IdentificationResult;
@@ -34,6 +37,7 @@ import org.opf_labs.fmts.fidget.TikaSigTester;
 import org.opf_labs.fmts.fidget.views.ApplicationView;
 
 import com.sun.jersey.multipart.FormDataParam;
+import com.yammer.metrics.annotation.Timed;
 
 
 /**
@@ -49,6 +53,15 @@ import com.sun.jersey.multipart.FormDataParam;
  */
 @Path("/")
 public class TikaTestResource {
+	private final SignatureRegistry signatures;
+
+	/**
+	 * @param signatures the registry of uploaded signatures
+	 */
+	public TikaTestResource(final SignatureRegistry signatures) {
+		this.signatures = signatures;
+	}
+
 	/**
 	 * This is the BEAM application home page.
 	 * 
@@ -65,27 +78,104 @@ public class TikaTestResource {
 	 * @param sigName the name of the sig file
 	 * @param datStream the Stream containg 64K of test data
 	 * @param datName the test data file name
-	 * @return tests the supplied signature against the supplied data file
+	 * @return tests the supplied signature against the supplied data file,
+	 *         BAD REQUEST if the signature can't be read
 	 */
+	@Timed
 	@POST
 	@Consumes(MediaType.MULTIPART_FORM_DATA)
 	@Produces(MediaType.TEXT_HTML)
 	public ApplicationView testSignature(@FormDataParam("sigFile") InputStream sigStream, @FormDataParam("sigName") String sigName, @FormDataParam("datFile") InputStream datStream, @FormDataParam("datName") String datName) {
+		TikaSigTester tika;
+		try {
+			tika = this.signatures.registerTester(sigStream);
+		} catch (MimeTypeException excep) {
+			throw new WebApplicationException(excep, Status.BAD_REQUEST);
+		} catch (IOException excep) {
+			throw new WebApplicationException(excep, Status.BAD_REQUEST);
+		}
 		IdentificationResult result = null;
 		try {
-			TikaSigTester tika = TikaSigTester.streamsOnly(sigStream);
 			result = tika.identify(datStream);
-			
-		} catch (MimeTypeException excep) {
-			// TODO Auto-generated catch block
-			excep.printStackTrace();
 		} catch (IOException excep) {
 			// TODO Auto-generated catch block
 			excep.printStackTrace();
 		}
 		return ApplicationView.getNewInstance("result.ftl", result);
 	}
+
+	/**
+	 * Registers a signature file once, so it can be tested against many data
+	 * files without uploading and parsing it for every test.
+	 * 
+	 * @param sigStream the Stream containing the Sig File
+	 * @return the handle of the signature, for testing data files against
+	 */
+	@Timed
+	@POST
+	@Path("signatures")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces(MediaType.TEXT_PLAIN)
+	public String registerSignature(@FormDataParam("sigFile") InputStream sigStream) {
+		try {
+			return this.signatures.register(sigStream);
+		} catch (MimeTypeException excep) {
+			throw new WebApplicationException(excep, Status.BAD_REQUEST);
+		} catch (IOException excep) {
+			throw new WebApplicationException(excep, Status.BAD_REQUEST);
+		}
+	}
+
+	/**
+	 * @param handle the handle returned when the signature was registered
+	 * @param datStream the Stream containg 64K of test data
+	 * @param datName the test data file name
+	 * @return tests the registered signature against the supplied data file,
+	 *         NOT FOUND if the signature needs registering again, BAD REQUEST
+	 *         if the data file can't be read
+	 */
+	@Timed
+	@POST
+	@Path("signatures/{handle}")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces(MediaType.TEXT_HTML)
+	public ApplicationView testRegisteredSignature(@PathParam("handle") String handle, @FormDataParam("datFile") InputStream datStream, @FormDataParam("datName") String datName) {
+		TikaSigTester tika = this.signatures.getTester(handle);
+		if (tika == null) throw new WebApplicationException(Status.NOT_FOUND);
+		try {
+			return ApplicationView.getNewInstance("result.ftl", tika.identify(datStream));
+		} catch (IOException excep) {
+			throw new WebApplicationException(excep, Status.BAD_REQUEST);
+		}
+	}
 	
+	/**
+	 * Tests the registered signature against a raw data upload. Only the
+	 * start of the upload that identification needs is read, the rest is
+	 * never read, so the size of the upload doesn't matter.
+	 * 
+	 * @param handle the handle returned when the signature was registered
+	 * @param datStream the Stream containg the test data
+	 * @return tests the registered signature against the supplied data,
+	 *         NOT FOUND if the signature needs registering again, BAD REQUEST
+	 *         if the data can't be read
+	 */
+	@Timed
+	@POST
+	@Path("signatures/{handle}")
+	@Consumes(MediaType.APPLICATION_OCTET_STREAM)
+	@Produces(MediaType.TEXT_HTML)
+	public ApplicationView testRegisteredData(@PathParam("handle") String handle, InputStream datStream) {
+		TikaSigTester tika = this.signatures.getTester(handle);
+		if (tika == null) throw new WebApplicationException(Status.NOT_FOUND);
+		try {
+			return ApplicationView.getNewInstance("result.ftl", tika.identify(datStream));
+		} catch (IOException excep) {
+			// A truncated or aborted upload, not an empty result
+			throw new WebApplicationException(excep, Status.BAD_REQUEST);
+		}
+	}
+
 	@GET
 	@Produces(MediaType.TEXT_HTML)
 	@Path("about")
@@ -18,6 +18,9 @@
  */
 package org.opf_labs.fmts.fidget.service;
 
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.opf_labs.fmts.fidget.resources.SignatureRegistry;
+
 import com.yammer.dropwizard.config.Configuration;
 
 /**
@@ -33,5 +36,34 @@ import com.yammer.dropwizard.config.Configuration;
  */
 
 public class FidgetConfiguration extends Configuration {
+	/** The default largest request body accepted, 256MB */
+	public static final long DEFAULT_MAX_UPLOAD_BYTES = 256L * 1024L * 1024L;
+	@JsonProperty
+	private int cachedSignatures = SignatureRegistry.DEFAULT_CACHED_SIGNATURES;
+
+	@JsonProperty
+	private int identifyThreads = Runtime.getRuntime().availableProcessors();
+	@JsonProperty
+	private long maxUploadBytes = DEFAULT_MAX_UPLOAD_BYTES;
+
+	/**
+	 * @return the number of uploaded signatures kept parsed for re-testing
+	 */
+	public int getCachedSignatures() {
+		return this.cachedSignatures;
+	}
+
+	/**
+	 * @return the number of threads identifying batch uploads
+	 */
+	public int getIdentifyThreads() {
+		return this.identifyThreads;
+	}
 
+	/**
+	 * @return the largest request body accepted, in bytes
+	 */
+	public long getMaxUploadBytes() {
+		return this.maxUploadBytes;
+	}
 }
@@ -18,6 +18,11 @@
  */
 package org.opf_labs.fmts.fidget.service;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.opf_labs.fmts.fidget.resources.BatchIdentificationResource;
+import org.opf_labs.fmts.fidget.resources.SignatureRegistry;
 import org.opf_labs.fmts.fidget.resources.TikaTestResource;
 
 import com.google.common.cache.CacheBuilderSpec;
@@ -68,6 +73,11 @@ public class FidgetService extends Service<FidgetConfiguration> {
     @Override
 	protected void initialize(FidgetConfiguration config, Environment environment)
 			throws Exception {
-		environment.addResource(new TikaTestResource());
+		environment.addFilter(new UploadLimitFilter(config.getMaxUploadBytes()), "/*");
+		SignatureRegistry signatures = new SignatureRegistry(config.getCachedSignatures());
+		environment.addResource(new TikaTestResource(signatures));
+		ExecutorService identifiers = environment.managedExecutorService("identify-%d",
+				config.getIdentifyThreads(), config.getIdentifyThreads(), 60, TimeUnit.SECONDS);
+		environment.addResource(new BatchIdentificationResource(signatures, identifiers));
 	}
 }
@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2012 Carl Wilson <carl@openplanetsfoundation.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * 
+ */
+package org.opf_labs.fmts.fidget.service;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Caps the size of request bodies, so an oversized upload is refused rather
+ * than being spooled to memory or disk before a resource sees it. Requests
+ * that declare a larger Content-Length are refused up front, and chunked
+ * requests fail once they've sent more than the maximum.
+ * 
+ * @version 0.1
+ */
+public final class UploadLimitFilter implements Filter {
+	private static final int REQUEST_ENTITY_TOO_LARGE = 413;
+	private final long maxBytes;
+
+	/**
+	 * @param maxBytes
+	 *            the largest request body accepted
+	 */
+	public UploadLimitFilter(final long maxBytes) {
+		Preconditions.checkArgument(maxBytes > 0, "maxBytes must be > 0");
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public void init(FilterConfig filterConfig) {
+		// Nothing to configure
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response,
+			FilterChain chain) throws IOException, ServletException {
+		final HttpServletRequest httpRequest = (HttpServletRequest) request;
+		long length = contentLength(httpRequest);
+		if (length > this.maxBytes) {
+			((HttpServletResponse) response).sendError(
+					REQUEST_ENTITY_TOO_LARGE, "Uploads are limited to "
+							+ this.maxBytes + " bytes.");
+			return;
+		}
+		chain.doFilter(new HttpServletRequestWrapper(httpRequest) {
+			private ServletInputStream input;
+
+			@Override
+			public ServletInputStream getInputStream() throws IOException {
+				if (this.input == null) {
+					this.input = new LimitedInputStream(
+							httpRequest.getInputStream(),
+							UploadLimitFilter.this.maxBytes);
+				}
+				return this.input;
+			}
+		}, response);
+	}
+
+	@Override
+	public void destroy() {
+		// Nothing to release
+	}
+
+	private static long contentLength(final HttpServletRequest request) {
+		String header = request.getHeader("Content-Length");
+		if (header == null) return -1L;
+		try {
+			return Long.parseLong(header.trim());
+		} catch (NumberFormatException excep) {
+			return -1L;
+		}
+	}
+
+	private static final class LimitedInputStream extends ServletInputStream {
+		private final ServletInputStream input;
+		private long remaining;
+
+		LimitedInputStream(final ServletInputStream input, final long maxBytes) {
+			this.input = input;
+			this.remaining = maxBytes;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int read = this.input.read();
+			if (read >= 0) count(1);
+			return read;
+		}
+
+		@Override
+		public int read(byte[] buff, int off, int len) throws IOException {
+			int read = this.input.read(buff, off, len);
+			if (read > 0) count(read);
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.input.close();
+		}
+
+		private void count(final int read) throws IOException {
+			this.remaining -= read;
+			if (this.remaining < 0)
+				throw new IOException("Upload is larger than the limit.");
+		}
+	}
+}
@@ -13,6 +13,8 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+var sigHandles = {}; // Handles of registered sig files, by name and size
+
 function submitSignature() {
 	var chunksize = (1024 * 64); // We're sending up to 64K of data
 	var sigFile = document.getElementById("sig-file").files[0]; // FileList
@@ -23,23 +25,60 @@ function submitSignature() {
 	if (datFile == undefined) {
 		alert("Please select a data file.");
 	}
+	var sigKey = sigFile.name + ":" + sigFile.size + ":" + sigFile.lastModifiedDate;
+	if (sigHandles[sigKey] == undefined) {
+		registerSignature(sigFile, sigKey, function() {
+			testData(sigKey, datFile, chunksize, false);
+		});
+	} else {
+		testData(sigKey, datFile, chunksize, true);
+	}
+}
+
+/**
+ * Uploads the sig file once, and remembers the handle the server gives it.
+ */
+function registerSignature(sigFile, sigKey, next) {
 	var formData = new FormData();
 	formData.append("sigFile", sigFile); // Add sig file to form data
-	formData.append("sigName", sigFile.name); // Get sig file name
-	formData.append("datFile", sliceFile(datFile, 0, chunksize)); // Add data file
-																	// slice to
-																	// form data
-	formData.append("datName", datFile.name); // Data File name
 	$.ajax({
-		url : "http://localhost:8080/fidget",
+		url : "http://localhost:8080/fidget/signatures",
 		type : "POST",
 		data : formData,
-		dataType: "html",
+		dataType: "text",
 		processData: false,
 		contentType: false,
+		success : function(data, success) {
+			sigHandles[sigKey] = data;
+			next();
+		}
+	});
+}
+
+/**
+ * Tests a data file slice against a registered sig file. If the server has
+ * dropped the signature it's registered again, once.
+ */
+function testData(sigKey, datFile, chunksize, retry) {
+	var sigFile = document.getElementById("sig-file").files[0];
+	$.ajax({
+		url : "http://localhost:8080/fidget/signatures/" + sigHandles[sigKey],
+		type : "POST",
+		data : sliceFile(datFile, 0, chunksize), // Raw data file slice
+		dataType: "html",
+		processData: false,
+		contentType: "application/octet-stream",
 		success : function(data, success) {
 			$("#results").empty();
 			$("#results").append(data);
+		},
+		error : function(xhr) {
+			if (xhr.status == 404 && retry) {
+				delete sigHandles[sigKey];
+				registerSignature(sigFile, sigKey, function() {
+					testData(sigKey, datFile, chunksize, false);
+				});
+			}
 		}
 	});
 }